@@ -0,0 +1,95 @@
+package org.slamstudios.simplecolor;
+
+import com.hypixel.hytale.server.core.event.events.player.PlayerChatEvent;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Description;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.I_Result;
+import org.slamstudios.simplecolor.listeners.ChatListener;
+
+import java.util.UUID;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * Chat arriving while the plugin shuts down is either formatted or left to
+ * the server; the listener must not fail on the config going away.
+ */
+@JCStressTest
+@Description("Chat message handled during shutdown")
+@Outcome(id = "1", expect = ACCEPTABLE, desc = "Formatted before the config was dropped")
+@Outcome(id = "0", expect = ACCEPTABLE, desc = "Left unformatted after shutdown")
+@Outcome(id = "-1", expect = FORBIDDEN, desc = "Listener threw")
+@State
+public class ChatShutdownStress {
+
+    private static final PlayerRef SENDER = new Sender();
+
+    public ChatShutdownStress() {
+        SimpleColor.useConfig(new SimpleColorConfig());
+    }
+
+    @Actor
+    public void chat(I_Result r) {
+        Event event = new Event("&aHello &#red:blue&lthere");
+        try {
+            ChatListener.onPlayerChat(event);
+            r.r1 = event.formatter != null ? 1 : 0;
+        } catch (RuntimeException e) {
+            r.r1 = -1;
+        }
+    }
+
+    @Actor
+    public void shutdown() {
+        SimpleColor.useConfig(null);
+    }
+
+    /**
+     * Stand-in sender; only identity is read by the chat path.
+     */
+    private static final class Sender extends PlayerRef {
+        private final UUID uuid = UUID.randomUUID();
+
+        @Override
+        public String getUsername() {
+            return "Sender";
+        }
+
+        @Override
+        public UUID getUuid() {
+            return uuid;
+        }
+    }
+
+    /**
+     * Stand-in chat event that keeps the formatter the listener installs.
+     */
+    private static final class Event extends PlayerChatEvent {
+        private final String content;
+        PlayerChatEvent.Formatter formatter;
+
+        Event(String content) {
+            this.content = content;
+        }
+
+        @Override
+        public PlayerRef getSender() {
+            return SENDER;
+        }
+
+        @Override
+        public String getContent() {
+            return content;
+        }
+
+        @Override
+        public void setFormatter(PlayerChatEvent.Formatter formatter) {
+            this.formatter = formatter;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.slamstudios.simplecolor;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Description;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.I_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * A reload swaps in a config that was fully built first, so a chat thread
+ * reading it sees either the old or the new one, never null and never one
+ * with only some of its values set.
+ */
+@JCStressTest
+@Description("Config read during a reload")
+@Outcome(id = "1", expect = ACCEPTABLE, desc = "Old config")
+@Outcome(id = "2", expect = ACCEPTABLE, desc = "New config")
+@Outcome(id = "0", expect = FORBIDDEN, desc = "No config during a reload")
+@Outcome(id = "3", expect = FORBIDDEN, desc = "Torn config: values from neither or only part of one")
+@State
+public class ConfigReloadStress {
+
+    private static final String OLD_FORMAT = "{player} old: {message}";
+    private static final String NEW_FORMAT = "{player} new: {message}";
+
+    public ConfigReloadStress() {
+        SimpleColor.useConfig(config(OLD_FORMAT, 1));
+    }
+
+    @Actor
+    public void reload() {
+        SimpleColor.useConfig(config(NEW_FORMAT, 2));
+    }
+
+    @Actor
+    public void read(I_Result r) {
+        SimpleColorConfig config = SimpleColor.getConfig();
+        if (config == null) {
+            r.r1 = 0;
+        } else if (OLD_FORMAT.equals(config.getChatFormat()) && config.getMaxLinksPerMessage() == 1) {
+            r.r1 = 1;
+        } else if (NEW_FORMAT.equals(config.getChatFormat()) && config.getMaxLinksPerMessage() == 2) {
+            r.r1 = 2;
+        } else {
+            r.r1 = 3;
+        }
+    }
+
+    private static SimpleColorConfig config(String format, int maxLinks) {
+        SimpleColorConfig config = new SimpleColorConfig();
+        config.setChatFormat(format);
+        config.setMaxLinksPerMessage(maxLinks);
+        return config;
+    }
+}
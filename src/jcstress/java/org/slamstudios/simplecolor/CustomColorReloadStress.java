@@ -0,0 +1,48 @@
+package org.slamstudios.simplecolor;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Description;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.I_Result;
+
+import java.util.Map;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * Replacing the custom colors swaps the whole lookup table, so a parse
+ * running at the same time resolves a name to its old or its new value,
+ * never to nothing or to a half-built table.
+ */
+@JCStressTest
+@Description("Parse with a custom color while the colors are replaced")
+@Outcome(id = "1", expect = ACCEPTABLE, desc = "Old color")
+@Outcome(id = "2", expect = ACCEPTABLE, desc = "New color")
+@Outcome(id = "0", expect = FORBIDDEN, desc = "Name not resolved or resolved to another color")
+@State
+public class CustomColorReloadStress {
+
+    private static final int OLD = 0xFF0000;
+    private static final int NEW = 0x00FF00;
+
+    public CustomColorReloadStress() {
+        ColorRegistry.setCustomColors(Map.of("brand", "#ff0000"));
+    }
+
+    @Actor
+    public void reload() {
+        ColorRegistry.setCustomColors(Map.of("brand", "#00ff00"));
+    }
+
+    @Actor
+    public void parse(I_Result r) {
+        // Names are resolved as gradient stops; the first character gets the first stop
+        ParsedMessage parsed = ColorParser.parseSegments("&#brand:000000Hello");
+        GradientSpec gradient = parsed.text.equals("Hello") ? parsed.gradientAt(0) : null;
+        int color = gradient != null ? gradient.colors()[0] : -1;
+        r.r1 = color == OLD ? 1 : color == NEW ? 2 : 0;
+    }
+}
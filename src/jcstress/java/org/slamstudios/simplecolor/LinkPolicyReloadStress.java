@@ -0,0 +1,58 @@
+package org.slamstudios.simplecolor;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.Description;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.III_Result;
+
+import java.util.List;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * A reload that denies a host while a chat thread checks a link to it. The
+ * link policy is applied before the config is published, so a thread that
+ * sees the new config also sees the host denied. A verdict reached under
+ * the old lists must not be cached into the new policy: once the reload is
+ * done, the host is denied.
+ */
+@JCStressTest
+@Description("Link check during a reload that denies the host")
+@Outcome(id = "0, 1, 0", expect = ACCEPTABLE, desc = "Old config, link allowed")
+@Outcome(id = "0, 0, 0", expect = ACCEPTABLE, desc = "Old config, new policy already applied")
+@Outcome(id = "1, 0, 0", expect = ACCEPTABLE, desc = "New config, link denied")
+@Outcome(id = "1, 1, .*", expect = FORBIDDEN, desc = "New config with the old link policy")
+@Outcome(id = ".*, .*, 1", expect = FORBIDDEN, desc = "Stale allowed verdict survived the reload")
+@State
+public class LinkPolicyReloadStress {
+
+    private static final String URL = "https://evil.example/page";
+
+    private final SimpleColorConfig denying = new SimpleColorConfig();
+
+    public LinkPolicyReloadStress() {
+        SimpleColor.useConfig(new SimpleColorConfig());
+        denying.setLinkDenyList(List.of("evil.example"));
+    }
+
+    @Actor
+    public void reload() {
+        SimpleColor.useConfig(denying);
+    }
+
+    @Actor
+    public void check(III_Result r) {
+        SimpleColorConfig config = SimpleColor.getConfig();
+        r.r1 = config == denying ? 1 : 0;
+        r.r2 = LinkPolicy.check(URL) != null ? 1 : 0;
+    }
+
+    @Arbiter
+    public void arbiter(III_Result r) {
+        r.r3 = LinkPolicy.check(URL) != null ? 1 : 0;
+    }
+}
@@ -0,0 +1,54 @@
+package org.slamstudios.simplecolor;
+
+import com.hypixel.hytale.server.core.Message;
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.Description;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.III_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * Two threads parsing different messages share the static tables and the
+ * color registry; each must get exactly what a parse on its own gives. Both
+ * also render one shared message for the same viewer profile, which must be
+ * rendered once and handed to both.
+ */
+@JCStressTest
+@Description("Concurrent parses and renders of a shared message")
+@Outcome(id = "1, 1, 1", expect = ACCEPTABLE, desc = "Both parses intact, one shared render")
+@Outcome(expect = FORBIDDEN, desc = "A parse was corrupted or the shared message was rendered twice")
+@State
+public class SharedParseStress {
+
+    private static final String FIRST = "&#ff0000:0000ff@oklab&lGradient &(https://example.com)[link] &*rainbow";
+    private static final String SECOND = "&cRed &#ffaa00&nunderlined {player} &#red:yellow:blue three stops";
+    private static final String EXPECTED_FIRST = ColorParser.serialize(ColorParser.parseSegments(FIRST));
+    private static final String EXPECTED_SECOND = ColorParser.serialize(ColorParser.parseSegments(SECOND));
+    private static final ViewerProfile PROFILE = ViewerProfile.DEFAULT.withPalette(ColorPalette.COLORBLIND_SAFE);
+
+    private final ParsedMessage shared = ColorParser.parseSegments("&#red:blue&lshared &*render");
+    private Message first;
+    private Message second;
+
+    @Actor
+    public void first(III_Result r) {
+        r.r1 = EXPECTED_FIRST.equals(ColorParser.serialize(ColorParser.parseSegments(FIRST))) ? 1 : 0;
+        first = shared.render(PROFILE);
+    }
+
+    @Actor
+    public void second(III_Result r) {
+        r.r2 = EXPECTED_SECOND.equals(ColorParser.serialize(ColorParser.parseSegments(SECOND))) ? 1 : 0;
+        second = shared.render(PROFILE);
+    }
+
+    @Arbiter
+    public void arbiter(III_Result r) {
+        r.r3 = first != null && first == second ? 1 : 0;
+    }
+}
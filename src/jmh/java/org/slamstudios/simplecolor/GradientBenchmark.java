@@ -0,0 +1,54 @@
+package org.slamstudios.simplecolor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slamstudios.simplecolor.enums.Interpolation;
+
+import java.awt.Color;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the scalar and Vector API paths of {@link GradientUtil#generatePacked}.
+ *
+ * Both benchmarks run the same code; the forks differ only in whether the
+ * incubator module is enabled and whether the vector path is switched off.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GradientBenchmark {
+
+    @Param({"16", "64", "256", "2048"})
+    public int steps;
+
+    private List<Color> stops;
+
+    @Setup
+    public void setup() {
+        stops = List.of(new Color(255, 0, 0), new Color(255, 170, 0), new Color(0, 170, 255), new Color(139, 0, 255));
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Dsimplecolor.vector.disabled=true"})
+    public int[] scalar() {
+        return GradientUtil.generatePacked(stops, steps, Interpolation.LINEAR);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector"})
+    public int[] vector() {
+        return GradientUtil.generatePacked(stops, steps, Interpolation.LINEAR);
+    }
+}
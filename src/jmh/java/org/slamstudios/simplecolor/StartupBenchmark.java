@@ -0,0 +1,57 @@
+package org.slamstudios.simplecolor;
+
+import com.hypixel.hytale.server.core.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures time-to-first-parse: the cost of the first chat-like message in a
+ * fresh JVM, including class loading and static initialization.
+ *
+ * Every fork is a new JVM and only one call is timed, so the result is the
+ * cold cost. Run it with an AppCDS or AOT cache (e.g. -jvmArgsAppend
+ * -XX:AOTCache=app.aot) to compare against a plain start.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class StartupBenchmark {
+
+    private static final String INPUT = "&#red:gold:blue[Admin] &fSteve&7: &aHello &lthere &*everyone";
+
+    /**
+     * First parse with nothing loaded yet.
+     */
+    @Benchmark
+    public Message cold() {
+        return ColorParser.parse(INPUT);
+    }
+
+    /**
+     * First parse after the startup warm-up ran, as on a server with warm-up enabled.
+     */
+    @Benchmark
+    public Message warmedUp(WarmedUp state) {
+        return ColorParser.parse(INPUT);
+    }
+
+    @State(Scope.Benchmark)
+    public static class WarmedUp {
+        @Setup
+        public void setup() {
+            org.slamstudios.simplecolor.Warmup.run();
+        }
+    }
+}
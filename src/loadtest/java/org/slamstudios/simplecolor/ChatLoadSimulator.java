@@ -0,0 +1,426 @@
+package org.slamstudios.simplecolor;
+
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.event.events.player.PlayerChatEvent;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import org.slamstudios.simplecolor.listeners.ChatListener;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives {@link ChatListener#onPlayerChat} the way a busy server would and
+ * reports throughput, latency percentiles and allocation per message.
+ *
+ * Senders and recipients are stand-in players; each message goes through the
+ * listener and is then formatted for every recipient, so the numbers cover
+ * the whole path from typed text to one Message per viewer. Recipients are
+ * spread over viewer profiles (default, mention highlight, colorblind palette,
+ * colors stripped), which is where the per-player work in chat happens.
+ *
+ * Run with:
+ * <pre>
+ * mvn -Ploadtest compile exec:java -Dexec.args="--threads=8 --senders=200 --recipients=100"
+ * </pre>
+ *
+ * Options (all --name=value):
+ * - threads: worker threads sending at once (default: available processors)
+ * - senders: distinct senders (default 200)
+ * - recipients: players each message is formatted for (default 50)
+ * - messages: measured messages in total (default 200000)
+ * - warmup: unmeasured messages in total, sent first (default 50000)
+ * - mix: weights of message kinds, e.g. plain=40,legacy=20,hex=10,gradient=10,rainbow=10,link=5,placeholder=5
+ * - spam, filter, highlight: true switches on spam detection, the word filter (two sample words)
+ *   or mention highlighting (default false)
+ * - seed: random seed for the generated messages (default 1)
+ */
+public final class ChatLoadSimulator {
+
+    private ChatLoadSimulator() {}
+
+    private static final String[] WORDS = {"hello", "there", "anyone", "selling", "diamonds", "meet", "at", "spawn",
+            "gg", "nice", "build", "who", "wants", "to", "trade", "lol", "thanks", "raid", "tonight", "ok"};
+    private static final String[] LEGACY = {"&a", "&b", "&c", "&e", "&6", "&9", "&d", "&l", "&o", "&n", "&r"};
+    private static final String[] HEX = {"&#ff5500", "&#00aaff", "&#7cfc00", "&#ff1493", "&#ffaa00", "&#ff7f50"};
+    private static final String[] GRADIENTS = {"&#red:blue", "&#ff0000:00ff00", "&#gold:yellow:white",
+            "&#coral:navy@hsv", "&#ff0000:0000ff@oklab"};
+
+    private static final String[] KINDS = {"plain", "legacy", "hex", "gradient", "rainbow", "link", "placeholder"};
+
+    // Keeps results reachable so the work is not optimized away
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        Options options = Options.parse(args);
+
+        SimpleColorConfig config = new SimpleColorConfig();
+        config.setSpamDetectionEnabled(options.spam);
+        config.setHighlightMentions(options.highlight);
+        if (options.filter) {
+            config.setFilterWords(List.of("diamonds", "raid"));
+            config.setWordFilterEnabled(true);
+        }
+        SimpleColor.useConfig(config);
+
+        SimulatedPlayer[] senders = new SimulatedPlayer[options.senders];
+        for (int i = 0; i < senders.length; i++) {
+            senders[i] = new SimulatedPlayer("Sender" + i);
+        }
+        List<PlayerRef> recipients = new ArrayList<>(options.recipients);
+        for (int i = 0; i < options.recipients; i++) {
+            SimulatedPlayer recipient = new SimulatedPlayer("Viewer" + i);
+            recipients.add(recipient);
+            recipient.profile = switch (i % 4) {
+                case 0 -> ViewerProfile.DEFAULT;
+                case 1 -> ViewerProfile.DEFAULT.withHighlight(recipient.getUsername());
+                case 2 -> ViewerProfile.DEFAULT.withPalette(ColorPalette.COLORBLIND_SAFE);
+                default -> ViewerProfile.DEFAULT.withStripColors(true);
+            };
+        }
+        SimpleColor.setViewerProfileResolver(viewer -> ((SimulatedPlayer) viewer).profile);
+
+        System.out.printf(Locale.ROOT, "%d threads, %d senders, %d recipients, mix %s%n",
+                options.threads, options.senders, options.recipients, options.mixDescription());
+        run(options, senders, recipients, options.warmup, null);
+        Result result = new Result(options.messages);
+        long elapsed = run(options, senders, recipients, options.messages, result);
+        result.report(elapsed, options.recipients);
+        SimpleColor.setViewerProfileResolver(null);
+    }
+
+    /**
+     * Sends the given number of messages split over the worker threads.
+     *
+     * @return wall time in nanoseconds
+     */
+    private static long run(Options options, SimulatedPlayer[] senders, List<PlayerRef> recipients, int messages,
+                            Result result) throws InterruptedException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(options.threads);
+        for (int t = 0; t < options.threads; t++) {
+            int worker = t;
+            int count = messages / options.threads + (t < messages % options.threads ? 1 : 0);
+            Thread thread = new Thread(() -> {
+                // Generated up front so neither the time nor the allocation of making them is counted
+                SplittableRandom random = new SplittableRandom(options.seed * 31 + worker);
+                StringBuilder text = new StringBuilder(96);
+                SimulatedPlayer[] from = new SimulatedPlayer[count];
+                String[] contents = new String[count];
+                for (int i = 0; i < count; i++) {
+                    from[i] = senders[random.nextInt(senders.length)];
+                    contents[i] = options.nextMessage(random, text);
+                }
+                long[] latencies = result != null ? new long[count] : null;
+                try {
+                    start.await();
+                    long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().threadId());
+                    for (int i = 0; i < count; i++) {
+                        long begin = System.nanoTime();
+                        deliver(from[i], recipients, contents[i]);
+                        if (latencies != null) {
+                            latencies[i] = System.nanoTime() - begin;
+                        }
+                    }
+                    if (result != null) {
+                        result.add(latencies,
+                                threads.getThreadAllocatedBytes(Thread.currentThread().threadId()) - allocated);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "ChatLoad-" + t);
+            thread.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        return System.nanoTime() - begin;
+    }
+
+    /**
+     * One chat message: the listener, then the formatter once per recipient, as the server does.
+     */
+    private static void deliver(SimulatedPlayer sender, List<PlayerRef> recipients, String content) {
+        SimulatedChatEvent event = new SimulatedChatEvent(sender, recipients, content);
+        ChatListener.onPlayerChat(event);
+        if (event.isCancelled()) {
+            return;
+        }
+        PlayerChatEvent.Formatter formatter = event.formatter;
+        if (formatter == null) {
+            sink = content;
+            return;
+        }
+        for (PlayerRef recipient : recipients) {
+            sink = formatter.format(recipient, content);
+        }
+    }
+
+    /**
+     * Latencies and allocation collected from all workers.
+     */
+    private static final class Result {
+        private final long[] latencies;
+        private int size;
+        private final AtomicLong allocated = new AtomicLong();
+
+        Result(int messages) {
+            latencies = new long[messages];
+        }
+
+        synchronized void add(long[] worker, long bytes) {
+            System.arraycopy(worker, 0, latencies, size, worker.length);
+            size += worker.length;
+            allocated.addAndGet(bytes);
+        }
+
+        void report(long elapsedNanos, int recipients) {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            double seconds = elapsedNanos / 1e9;
+            System.out.printf(Locale.ROOT, "messages:    %d in %.2f s%n", size, seconds);
+            System.out.printf(Locale.ROOT, "throughput:  %.0f messages/s, %.0f deliveries/s%n",
+                    size / seconds, (double) size * recipients / seconds);
+            System.out.printf(Locale.ROOT, "latency us:  p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n",
+                    percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                    percentile(sorted, 0.999), sorted.length > 0 ? sorted[sorted.length - 1] / 1e3 : 0);
+            System.out.printf(Locale.ROOT, "allocation:  %.0f bytes/message, %.0f bytes/delivery%n",
+                    (double) allocated.get() / Math.max(1, size),
+                    (double) allocated.get() / Math.max(1, (long) size * recipients));
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+            return sorted[Math.max(0, index)] / 1e3;
+        }
+    }
+
+    /**
+     * Command line options and the message generator they configure.
+     */
+    private static final class Options {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int senders = 200;
+        int recipients = 50;
+        int messages = 200_000;
+        int warmup = 50_000;
+        boolean spam;
+        boolean filter;
+        boolean highlight;
+        long seed = 1;
+        final Map<String, Integer> mix = new LinkedHashMap<>();
+        // Cumulative weights in KINDS order
+        int[] cumulative;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            int[] weights = {40, 20, 10, 10, 10, 5, 5};
+            for (int k = 0; k < KINDS.length; k++) {
+                options.mix.put(KINDS[k], weights[k]);
+            }
+            for (String arg : args) {
+                int equals = arg.indexOf('=');
+                if (!arg.startsWith("--") || equals < 0) {
+                    throw new IllegalArgumentException("Expected --name=value, got " + arg);
+                }
+                String name = arg.substring(2, equals);
+                String value = arg.substring(equals + 1);
+                switch (name) {
+                    case "threads" -> options.threads = Math.max(1, Integer.parseInt(value));
+                    case "senders" -> options.senders = Math.max(1, Integer.parseInt(value));
+                    case "recipients" -> options.recipients = Math.max(0, Integer.parseInt(value));
+                    case "messages" -> options.messages = Math.max(1, Integer.parseInt(value));
+                    case "warmup" -> options.warmup = Math.max(0, Integer.parseInt(value));
+                    case "spam" -> options.spam = Boolean.parseBoolean(value);
+                    case "filter" -> options.filter = Boolean.parseBoolean(value);
+                    case "highlight" -> options.highlight = Boolean.parseBoolean(value);
+                    case "seed" -> options.seed = Long.parseLong(value);
+                    case "mix" -> {
+                        options.mix.clear();
+                        for (String entry : value.split(",")) {
+                            String[] parts = entry.split("=", 2);
+                            if (parts.length != 2 || !Arrays.asList(KINDS).contains(parts[0])) {
+                                throw new IllegalArgumentException("Unknown mix entry " + entry
+                                        + ", kinds are " + String.join(", ", KINDS));
+                            }
+                            options.mix.put(parts[0], Math.max(0, Integer.parseInt(parts[1])));
+                        }
+                    }
+                    default -> throw new IllegalArgumentException("Unknown option --" + name);
+                }
+            }
+            options.cumulative = new int[KINDS.length];
+            int total = 0;
+            for (int k = 0; k < KINDS.length; k++) {
+                total += options.mix.getOrDefault(KINDS[k], 0);
+                options.cumulative[k] = total;
+            }
+            if (total == 0) {
+                throw new IllegalArgumentException("The mix has no weight");
+            }
+            return options;
+        }
+
+        String mixDescription() {
+            return mix.toString();
+        }
+
+        /**
+         * Generates one message of a kind drawn from the mix.
+         */
+        String nextMessage(SplittableRandom random, StringBuilder text) {
+            text.setLength(0);
+            int pick = random.nextInt(cumulative[cumulative.length - 1]);
+            int kind = 0;
+            while (pick >= cumulative[kind]) {
+                kind++;
+            }
+            int words = 2 + random.nextInt(10);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) {
+                    text.append(' ');
+                }
+                switch (KINDS[kind]) {
+                    case "legacy" -> {
+                        if (random.nextInt(3) == 0) {
+                            text.append(LEGACY[random.nextInt(LEGACY.length)]);
+                        }
+                    }
+                    case "hex" -> {
+                        if (w == 0 || random.nextInt(4) == 0) {
+                            text.append(HEX[random.nextInt(HEX.length)]);
+                        }
+                    }
+                    case "gradient" -> {
+                        if (w == 0) {
+                            text.append(GRADIENTS[random.nextInt(GRADIENTS.length)]);
+                        }
+                    }
+                    case "rainbow" -> {
+                        if (w == 0) {
+                            text.append("&*");
+                        }
+                    }
+                    case "link" -> {
+                        if (w == words / 2) {
+                            text.append("&(https://example.com/").append(random.nextInt(1000)).append(")[");
+                        }
+                    }
+                    case "placeholder" -> {
+                        if (w == 0) {
+                            text.append("{player} says ");
+                        }
+                    }
+                    default -> {
+                        // Plain text
+                    }
+                }
+                text.append(WORDS[random.nextInt(WORDS.length)]);
+                if (KINDS[kind].equals("link") && w == words / 2) {
+                    text.append(']');
+                }
+            }
+            if (random.nextInt(50) == 0) {
+                // Mention a recipient now and then so highlighting has work to do
+                text.append(" Viewer").append(random.nextInt(Math.max(1, recipients)));
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * Stand-in for a connected player; only identity is needed by the chat path.
+     */
+    static final class SimulatedPlayer extends PlayerRef {
+        private final String name;
+        private final UUID uuid;
+        ViewerProfile profile = ViewerProfile.DEFAULT;
+
+        SimulatedPlayer(String name) {
+            this.name = name;
+            this.uuid = UUID.nameUUIDFromBytes(name.getBytes());
+        }
+
+        @Override
+        public String getUsername() {
+            return name;
+        }
+
+        @Override
+        public UUID getUuid() {
+            return uuid;
+        }
+
+        @Override
+        public void sendMessage(Message message) {
+            sink = message;
+        }
+    }
+
+    /**
+     * Stand-in chat event that keeps the formatter the listener installs.
+     */
+    static final class SimulatedChatEvent extends PlayerChatEvent {
+        private final PlayerRef sender;
+        private final List<PlayerRef> targets;
+        private String content;
+        private boolean cancelled;
+        PlayerChatEvent.Formatter formatter;
+
+        SimulatedChatEvent(PlayerRef sender, List<PlayerRef> targets, String content) {
+            this.sender = sender;
+            this.targets = targets;
+            this.content = content;
+        }
+
+        @Override
+        public PlayerRef getSender() {
+            return sender;
+        }
+
+        @Override
+        public String getContent() {
+            return content;
+        }
+
+        @Override
+        public void setContent(String content) {
+            this.content = content;
+        }
+
+        @Override
+        public List<PlayerRef> getTargets() {
+            return targets;
+        }
+
+        @Override
+        public void setFormatter(PlayerChatEvent.Formatter formatter) {
+            this.formatter = formatter;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void setCancelled(boolean cancelled) {
+            this.cancelled = cancelled;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.slamstudios.simplecolor;
+
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+/**
+ * Sends one parsed message to many recipients.
+ *
+ * Recipients are grouped by viewer profile, each group's Message is rendered
+ * once, and rendering plus sending is spread over a work-stealing pool.
+ * Only a bounded number of broadcasts run on the pool at once; when it is
+ * saturated the calling thread delivers the broadcast itself, which slows
+ * down whoever is producing them. The pool follows the config: when its
+ * parallelism or pending limit changes, the next broadcast starts a new pool
+ * and the old one finishes what it is running.
+ */
+final class Broadcaster {
+
+    private Broadcaster() {}
+
+    // Below this many recipients the pool hand-off costs more than it saves
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    private static final Object LOCK = new Object();
+    private static ForkJoinPool pool;
+    private static Semaphore pending;
+    // The sizes the current pool and semaphore were built with
+    private static int poolParallelism;
+    private static int poolMaxPending;
+
+    /**
+     * Delivers a message to every recipient, rendered for each one's profile.
+     */
+    @Nonnull
+    static CompletableFuture<Void> broadcast(@Nonnull ParsedMessage message, @Nonnull Collection<PlayerRef> recipients,
+                                             @Nonnull ViewerProfileResolver resolver) {
+        if (recipients.size() < PARALLEL_THRESHOLD) {
+            deliverSequential(message, recipients, resolver);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        ForkJoinPool executor;
+        Semaphore permits;
+        synchronized (LOCK) {
+            SimpleColorConfig config = SimpleColor.getConfig();
+            int parallelism = config != null ? config.getBroadcastParallelism() : 0;
+            parallelism = parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            int maxPending = Math.max(1, config != null ? config.getBroadcastMaxPending() : 16);
+            if (pool != null && (parallelism != poolParallelism || maxPending != poolMaxPending)) {
+                // Changed in the config; broadcasts on the old pool finish there
+                pool.shutdown();
+                pool = null;
+            }
+            if (pool == null) {
+                pool = new ForkJoinPool(parallelism);
+                pending = new Semaphore(maxPending);
+                poolParallelism = parallelism;
+                poolMaxPending = maxPending;
+            }
+            executor = pool;
+            permits = pending;
+        }
+
+        if (!permits.tryAcquire()) {
+            // Saturated: the caller pays for its own broadcast
+            deliverSequential(message, recipients, resolver);
+            return CompletableFuture.completedFuture(null);
+        }
+        // The caller may change its collection once this returns, e.g. a live player list
+        List<PlayerRef> snapshot = List.copyOf(recipients);
+        try {
+            return CompletableFuture.runAsync(() -> deliverParallel(message, snapshot, resolver), executor)
+                    .whenComplete((result, error) -> permits.release());
+        } catch (RuntimeException e) {
+            // Pool was shut down concurrently
+            permits.release();
+            deliverSequential(message, snapshot, resolver);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Stops the pool. Broadcasts already running finish; later ones start a new pool.
+     */
+    static void shutdown() {
+        synchronized (LOCK) {
+            if (pool != null) {
+                pool.shutdown();
+                pool = null;
+                pending = null;
+            }
+        }
+    }
+
+    private static void deliverSequential(ParsedMessage message, Collection<PlayerRef> recipients,
+                                          ViewerProfileResolver resolver) {
+        for (PlayerRef recipient : recipients) {
+            send(recipient, message.render(resolver.resolve(recipient)));
+        }
+    }
+
+    private static void deliverParallel(ParsedMessage message, Collection<PlayerRef> recipients,
+                                        ViewerProfileResolver resolver) {
+        // Parallel streams started from a pool thread run on that same pool
+        Map<ViewerProfile, List<PlayerRef>> groups = recipients.parallelStream()
+                .collect(Collectors.groupingByConcurrent(recipient -> message.normalize(resolver.resolve(recipient)),
+                        ConcurrentHashMap::new, Collectors.toList()));
+
+        groups.entrySet().parallelStream().forEach(group -> {
+            Message rendered = message.render(group.getKey());
+            group.getValue().parallelStream().forEach(recipient -> send(recipient, rendered));
+        });
+    }
+
+    private static void send(PlayerRef recipient, Message message) {
+        try {
+            recipient.sendMessage(message);
+        } catch (RuntimeException e) {
+            // One failing recipient must not stop the rest
+            SimpleColor plugin = SimpleColor.getInstance();
+            if (plugin != null) {
+                plugin.getLogger().at(Level.WARNING).withCause(e).log("Failed to deliver broadcast to " + recipient.getUsername());
+            }
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package org.slamstudios.simplecolor;
+
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+/**
+ * Chat audit log written off the chat thread.
+ *
+ * Chat publishes (time, sender, stripped message) into a bounded lock-free ring;
+ * a single writer thread drains it in batches and appends them to
+ * {@code chat-<date>-<n>.log} files, rotating daily and at a size limit.
+ * Publishing never touches the disk. When the ring is full an entry is
+ * either dropped (and counted in the log) or the publisher waits for room,
+ * depending on config.
+ *
+ * Each line is: ISO timestamp, sender UUID, sender name, "sent" or
+ * "blocked" and the text, tab separated. Messages blocked as spam are kept
+ * too, so moderators can see what was stopped. Tabs and line breaks in the
+ * text are written as spaces.
+ */
+public final class ChatAuditLog {
+
+    // Longest a blocked publisher waits before dropping its entry anyway
+    private static final long MAX_BLOCK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // How long the writer sleeps when the ring is empty
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int BATCH = 256;
+
+    private static final Object LOCK = new Object();
+    private static volatile ChatAuditLog current;
+
+    private final Path directory;
+    private final boolean blockWhenFull;
+    private final long flushNanos;
+    private final long maxFileBytes;
+
+    // Bounded multi-producer ring; a slot's sequence says whose turn it is
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final long[] times;
+    private final UUID[] senders;
+    private final String[] names;
+    private final String[] lines;
+    private final boolean[] blocked;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // Writer thread state
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+    private final StringBuilder line = new StringBuilder(256);
+    private FileChannel channel;
+    private LocalDate fileDate;
+    private int fileIndex;
+    private long fileBytes;
+    private long lastForce = System.nanoTime();
+    private boolean unforced;
+
+    private ChatAuditLog(Path directory, SimpleColorConfig config) {
+        this.directory = directory;
+        this.blockWhenFull = config.isAuditBlockWhenFull();
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getAuditFlushMillis()));
+        this.maxFileBytes = Math.max(1, config.getAuditMaxFileMegabytes()) * 1024L * 1024L;
+
+        int capacity = Integer.highestOneBit(Math.max(16, config.getAuditBufferSize()) - 1) << 1;
+        mask = capacity - 1;
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        times = new long[capacity];
+        senders = new UUID[capacity];
+        names = new String[capacity];
+        lines = new String[capacity];
+        blocked = new boolean[capacity];
+
+        writer = new Thread(this::run, "SimpleColor-ChatAudit");
+        // Non-daemon so entries published before shutdown still reach disk
+        writer.setDaemon(false);
+    }
+
+    /**
+     * Records a chat line that was sent, if the audit log is enabled. Never blocks
+     * on disk; may wait for room in the ring if configured to.
+     *
+     * @param sender the player who sent it
+     * @param line what the player wrote, without color codes and unfiltered
+     */
+    public static void publish(@Nonnull PlayerRef sender, @Nonnull String line) {
+        publish(sender, line, false);
+    }
+
+    /**
+     * Records a chat line if the audit log is enabled, marked as sent or blocked.
+     *
+     * @param sender the player who sent it
+     * @param line what the player wrote, without color codes and unfiltered
+     * @param blocked whether the message was stopped instead of sent, e.g. as spam
+     */
+    public static void publish(@Nonnull PlayerRef sender, @Nonnull String line, boolean blocked) {
+        ChatAuditLog log = current;
+        if (log != null) {
+            log.offer(System.currentTimeMillis(), sender.getUuid(), sender.getUsername(), line, blocked);
+        }
+    }
+
+    /**
+     * Whether the audit log is running, so callers can skip preparing a line for it.
+     */
+    public static boolean isEnabled() {
+        return current != null;
+    }
+
+    /**
+     * Gets how many entries were dropped because the ring was full.
+     */
+    public static long getDroppedCount() {
+        ChatAuditLog log = current;
+        return log != null ? log.dropped.get() : 0;
+    }
+
+    /**
+     * Starts, stops or restarts the writer to match the config.
+     */
+    static void configure(@Nonnull Path directory, @Nonnull SimpleColorConfig config) {
+        synchronized (LOCK) {
+            ChatAuditLog log = current;
+            if (log != null && config.isAuditLogEnabled() && log.matches(directory, config)) {
+                return;
+            }
+            if (log != null) {
+                current = null;
+                log.stop();
+            }
+            if (config.isAuditLogEnabled()) {
+                log = new ChatAuditLog(directory, config);
+                log.writer.start();
+                current = log;
+            }
+        }
+    }
+
+    /**
+     * Writes out everything published so far and stops the writer.
+     */
+    static void shutdown() {
+        synchronized (LOCK) {
+            ChatAuditLog log = current;
+            current = null;
+            if (log != null) {
+                log.stop();
+            }
+        }
+    }
+
+    private boolean matches(Path directory, SimpleColorConfig config) {
+        return this.directory.equals(directory) && blockWhenFull == config.isAuditBlockWhenFull()
+                && flushNanos == TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getAuditFlushMillis()))
+                && maxFileBytes == Math.max(1, config.getAuditMaxFileMegabytes()) * 1024L * 1024L
+                && mask + 1 == Integer.highestOneBit(Math.max(16, config.getAuditBufferSize()) - 1) << 1;
+    }
+
+    private void offer(long time, @Nullable UUID sender, @Nullable String name, String text, boolean wasBlocked) {
+        long deadline = 0;
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    times[slot] = time;
+                    senders[slot] = sender;
+                    names[slot] = name;
+                    lines[slot] = text;
+                    blocked[slot] = wasBlocked;
+                    // Publishes the fields to the writer
+                    sequences.setRelease(slot, position + 1);
+                    return;
+                }
+            } else if (difference < 0) {
+                // Full: the writer has not freed this slot yet, wake it early
+                LockSupport.unpark(writer);
+                if (!blockWhenFull || !running) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                long now = System.nanoTime();
+                if (deadline == 0) {
+                    deadline = now + MAX_BLOCK_NANOS;
+                } else if (now - deadline > 0) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                LockSupport.parkNanos(50_000);
+            }
+            // Otherwise another publisher took this position; retry with the new tail
+        }
+    }
+
+    private void stop() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        long reportedDrops = 0;
+        try {
+            while (true) {
+                int written = drain();
+                long drops = dropped.get();
+                if (drops != reportedDrops) {
+                    line.setLength(0);
+                    line.append(Instant.now()).append("\t-\t-\t-\t").append(drops - reportedDrops)
+                            .append(" entries dropped, audit buffer full");
+                    append(System.currentTimeMillis());
+                    reportedDrops = drops;
+                    written++;
+                }
+                if (written > 0) {
+                    writeBuffer();
+                }
+                maybeForce(!running);
+                if (written == 0) {
+                    if (!running) {
+                        break;
+                    }
+                    LockSupport.parkNanos(IDLE_NANOS);
+                }
+            }
+        } catch (IOException e) {
+            SimpleColor plugin = SimpleColor.getInstance();
+            if (plugin != null) {
+                plugin.getLogger().at(Level.WARNING).withCause(e).log("Chat audit log failed, no longer writing");
+            }
+            running = false;
+        } finally {
+            closeChannel();
+        }
+    }
+
+    /**
+     * Encodes up to one batch of entries into the buffer, returning how many.
+     */
+    private int drain() throws IOException {
+        int count = 0;
+        while (count < BATCH) {
+            int slot = (int) head & mask;
+            if (sequences.getAcquire(slot) != head + 1) {
+                break;
+            }
+            line.setLength(0);
+            line.append(Instant.ofEpochMilli(times[slot])).append('\t')
+                    .append(senders[slot]).append('\t')
+                    .append(names[slot]).append('\t')
+                    .append(blocked[slot] ? "blocked" : "sent").append('\t');
+            String text = lines[slot];
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                line.append(c == '\t' || c == '\n' || c == '\r' ? ' ' : c);
+            }
+            long time = times[slot];
+            senders[slot] = null;
+            names[slot] = null;
+            lines[slot] = null;
+            // Hands the slot back to publishers for the next lap
+            sequences.setRelease(slot, head + mask + 1);
+            head++;
+            append(time);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Encodes the line into the buffer, writing the buffer out whenever it fills.
+     */
+    private void append(long time) throws IOException {
+        line.append('\n');
+        LocalDate date = Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()).toLocalDate();
+        if (channel == null || !date.equals(fileDate) || fileBytes + buffer.position() >= maxFileBytes) {
+            writeBuffer();
+            rotate(date);
+        }
+        CharBuffer chars = CharBuffer.wrap(line);
+        encoder.reset();
+        while (encoder.encode(chars, buffer, true).isOverflow()) {
+            writeBuffer();
+        }
+        encoder.flush(buffer);
+    }
+
+    private void writeBuffer() throws IOException {
+        if (buffer.position() == 0 || channel == null) {
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            fileBytes += channel.write(buffer);
+        }
+        buffer.clear();
+        unforced = true;
+    }
+
+    private void maybeForce(boolean always) throws IOException {
+        if (!unforced || channel == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (always || now - lastForce >= flushNanos) {
+            channel.force(false);
+            lastForce = now;
+            unforced = false;
+        }
+    }
+
+    /**
+     * Closes the current file and opens the next free one for the date.
+     */
+    private void rotate(LocalDate date) throws IOException {
+        maybeForce(true);
+        closeChannel();
+        Files.createDirectories(directory);
+        int index = date.equals(fileDate) ? fileIndex + 1 : 0;
+        Path file;
+        while (true) {
+            file = directory.resolve("chat-" + date + "-" + index + ".log");
+            if (!Files.exists(file) || Files.size(file) < maxFileBytes) {
+                break;
+            }
+            index++;
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        fileBytes = channel.size();
+        fileDate = date;
+        fileIndex = index;
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Nothing left to write to
+            }
+            channel = null;
+        }
+    }
+}
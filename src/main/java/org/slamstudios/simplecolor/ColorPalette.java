@@ -0,0 +1,76 @@
+package org.slamstudios.simplecolor;
+
+import org.slamstudios.simplecolor.enums.ChatColor;
+
+import javax.annotation.Nonnull;
+import java.awt.Color;
+import java.util.Map;
+
+/**
+ * Remaps colors for a viewer, e.g. to a colorblind-safe set.
+ *
+ * Palettes are used as cache keys when rendering, so keep one instance per
+ * palette instead of creating new ones per message.
+ */
+@FunctionalInterface
+public interface ColorPalette {
+
+    /**
+     * Okabe-Ito based palette that keeps the 16 legacy colors apart for
+     * red-green colorblind viewers. Other colors snap to the nearest legacy color first.
+     */
+    ColorPalette COLORBLIND_SAFE = of(Map.ofEntries(
+            Map.entry(ChatColor.BLACK, new Color(0x000000)),
+            Map.entry(ChatColor.DARK_BLUE, new Color(0x0072B2)),
+            Map.entry(ChatColor.DARK_GREEN, new Color(0x009E73)),
+            Map.entry(ChatColor.DARK_AQUA, new Color(0x3A8FB7)),
+            Map.entry(ChatColor.DARK_RED, new Color(0xD55E00)),
+            Map.entry(ChatColor.DARK_PURPLE, new Color(0xA8577E)),
+            Map.entry(ChatColor.GOLD, new Color(0xE69F00)),
+            Map.entry(ChatColor.GRAY, new Color(0xAAAAAA)),
+            Map.entry(ChatColor.DARK_GRAY, new Color(0x555555)),
+            Map.entry(ChatColor.BLUE, new Color(0x56B4E9)),
+            Map.entry(ChatColor.GREEN, new Color(0x5CD6B0)),
+            Map.entry(ChatColor.AQUA, new Color(0xA6DCF5)),
+            Map.entry(ChatColor.RED, new Color(0xF07E3C)),
+            Map.entry(ChatColor.LIGHT_PURPLE, new Color(0xCC79A7)),
+            Map.entry(ChatColor.YELLOW, new Color(0xF0E442)),
+            Map.entry(ChatColor.WHITE, new Color(0xFFFFFF))
+    ));
+
+    /**
+     * Remaps a packed 0xRRGGBB color.
+     */
+    int remap(int rgb);
+
+    /**
+     * Creates a palette that snaps every color to the nearest legacy color
+     * and then replaces it. Legacy colors missing from the map are kept.
+     */
+    @Nonnull
+    static ColorPalette of(@Nonnull Map<ChatColor, Color> replacements) {
+        ChatColor[] legacy = ChatColor.values();
+        int[] sources = new int[legacy.length];
+        int[] targets = new int[legacy.length];
+        for (int i = 0; i < legacy.length; i++) {
+            sources[i] = legacy[i].getColor().getRGB() & 0xFFFFFF;
+            Color target = replacements.get(legacy[i]);
+            targets[i] = target != null ? target.getRGB() & 0xFFFFFF : sources[i];
+        }
+        return rgb -> {
+            int best = 0;
+            int bestDistance = Integer.MAX_VALUE;
+            for (int i = 0; i < sources.length; i++) {
+                int dr = ((rgb >> 16) & 0xFF) - ((sources[i] >> 16) & 0xFF);
+                int dg = ((rgb >> 8) & 0xFF) - ((sources[i] >> 8) & 0xFF);
+                int db = (rgb & 0xFF) - (sources[i] & 0xFF);
+                int distance = dr * dr + dg * dg + db * db;
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = i;
+                }
+            }
+            return targets[best];
+        };
+    }
+}
@@ -2,8 +2,12 @@ package org.slamstudios.simplecolor;
 
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.Message;
+import org.slamstudios.simplecolor.enums.Alignment;
 import org.slamstudios.simplecolor.enums.ChatColor;
 import org.slamstudios.simplecolor.enums.ChatFormat;
+import org.slamstudios.simplecolor.enums.Degradation;
+import org.slamstudios.simplecolor.enums.GradientFit;
+import org.slamstudios.simplecolor.enums.Interpolation;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -11,6 +15,7 @@ import java.awt.Color;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -22,15 +27,20 @@ import java.util.regex.Pattern;
  * - &l, &o, &n, &m, &r for formats (bold, italic, underline, monospace, reset)
  * - &#RRGGBB for hex colors
  * - &#color1:color2:color3:... for multi-color gradients (applies to following text until next color code)
+ * - &#color1:color2@mode to pick the gradient color space (linear, gamma, oklab, hsv)
  * - &* for rainbow gradient (applies to following text until next color code)
  * - &(<url>)[text] for clickable links
+ * - {key} placeholders, when parsed with a {@link PlaceholderContext}
+ *
+ * Format codes and links inside a gradient continue it rather than starting it
+ * over, so &*Hello &lWorld is one rainbow across both words.
  */
 public final class ColorParser {
 
     private ColorParser() {}
 
     // Rainbow colors
-    private static final List<Color> RAINBOW_COLORS = Arrays.asList(
+    static final List<Color> RAINBOW_COLORS = Arrays.asList(
             new Color(255, 0, 0),     // Red
             new Color(255, 127, 0),   // Orange
             new Color(255, 255, 0),   // Yellow
@@ -40,20 +50,26 @@ public final class ColorParser {
             new Color(139, 0, 255)    // Violet
     );
 
-    // Pattern for hex colors: &#RRGGBB
-    private static final Pattern HEX_PATTERN = Pattern.compile("&?#([0-9a-fA-F]{6})");
-
-    // Pattern for multi-color gradients: &#color1:color2:color3:... (applies to following text)
-    private static final Pattern GRADIENT_PATTERN = Pattern.compile("&#((?:[0-9a-fA-F]{6}|[a-zA-Z_]+)(?::(?:[0-9a-fA-F]{6}|[a-zA-Z_]+))+)");
+    // Pattern for multi-color gradients: &#color1:color2:color3:...[@mode] (applies to following text)
+    private static final Pattern GRADIENT_PATTERN = Pattern.compile("&#((?:[0-9a-fA-F]{6}|[a-zA-Z_]+)(?::(?:[0-9a-fA-F]{6}|[a-zA-Z_]+))+)"
+            + "(?:@(?i)(" + interpolationNames() + "))?");
 
     // Pattern for rainbow: &* (applies to following text until next color code)
     private static final char RAINBOW_CODE = '*';
 
-    // Pattern for links: &(<url>)[text]
-    private static final Pattern LINK_PATTERN = Pattern.compile("&\\(([^)]+)\\)\\[([^\\]]+)]");
+    /**
+     * Patterns only needed by stripAll, compiled on its first call instead of with the parser.
+     */
+    private static final class StripPatterns {
+        // Pattern for links: &(<url>)[text]
+        static final Pattern LINK_PATTERN = Pattern.compile("&\\(([^)]+)\\)\\[([^\\]]+)]");
+
+        // Pattern for hex colors: &#RRGGBB
+        static final Pattern HEX_PATTERN = Pattern.compile("&?#([0-9a-fA-F]{6})");
 
-    // Pattern for legacy color codes: &X or §X
-    private static final Pattern LEGACY_PATTERN = Pattern.compile("[&§]([0-9a-fA-FklmnoKLMNOrR*])");
+        // Pattern for legacy color codes: &X or §X
+        static final Pattern LEGACY_PATTERN = Pattern.compile("[&§]([0-9a-fA-FklmnoKLMNOrR*])");
+    }
 
     /**
      * Parses a string and returns a formatted Message.
@@ -77,98 +93,264 @@ public final class ColorParser {
      */
     @Nonnull
     public static Message parse(@Nonnull String input, @Nullable Player player) {
-        List<MessageSegment> segments = new ArrayList<>();
-        String remaining = input;
+        return parseSegments(input, player).toMessage();
+    }
 
-        // Process links first
-        remaining = processLinks(remaining, segments, player);
+    /**
+     * Parses a string into its segment form without building a Message yet.
+     * The result can be rendered several times, e.g. once per viewer profile.
+     * This method does not check permissions.
+     *
+     * @param input the input string with color codes
+     * @return the parsed segments
+     */
+    @Nonnull
+    public static ParsedMessage parseSegments(@Nonnull String input) {
+        return parseSegments(input, null);
+    }
 
-        // Process gradients
-        remaining = processGradients(remaining, segments, player);
+    /**
+     * Parses a string into its segment form without building a Message yet.
+     * Checks permissions if a player is provided.
+     *
+     * @param input the input string with color codes
+     * @param player the player to check permissions for (or null to skip checks)
+     * @return the parsed segments
+     */
+    @Nonnull
+    public static ParsedMessage parseSegments(@Nonnull String input, @Nullable Player player) {
+        return parseSegments(input, player, null);
+    }
+
+    /**
+     * Parses a string into its segment form, expanding {key} placeholders as it scans.
+     *
+     * Untrusted placeholder values are inserted as plain text in the current style.
+     * Trusted values are parsed for color codes; the style they set ends with the value,
+     * so it does not leak into the text after the placeholder.
+     *
+     * The parse is charged to the context's sender, or else to the player. Someone
+     * over their parse budget gets solid colors instead of gradients, then plain text;
+     * with {@link PlaceholderContext#fromSender} only in the value they wrote.
+     *
+     * @param input the input string with color codes and placeholders
+     * @param player the player to check permissions for (or null to skip checks)
+     * @param context the placeholder values (or null to leave braces as-is)
+     * @return the parsed segments
+     */
+    @Nonnull
+    public static ParsedMessage parseSegments(@Nonnull String input, @Nullable Player player,
+                                              @Nullable PlaceholderContext context) {
+        SegmentBuffer segments = new SegmentBuffer(input.length());
+        UUID account = context != null && context.getSender() != null ? context.getSender().getUuid()
+                : player != null ? player.getUuid() : null;
+        if (account == null) {
+            // Links, colors, formats and placeholders are all handled in one scan
+            processColorsAndFormats(input, segments, player, context, Degradation.NONE);
+            return segments.build();
+        }
 
-        // Process remaining text with colors and formats
-        processColorsAndFormats(remaining, segments, player);
+        long start = System.nanoTime();
+        processColorsAndFormats(input, segments, player, context, ParseBudget.degradationFor(account));
+        ParsedMessage parsed = segments.build();
+        ParseBudget.record(account, System.nanoTime() - start, parsed.size);
+        return parsed;
+    }
 
-        return buildMessage(segments);
+    /**
+     * Parses a string so it can be re-parsed cheaply after small edits, e.g. for a live preview.
+     * Checks permissions if a player is provided.
+     *
+     * @param input the input string with color codes
+     * @param player the player to check permissions for (or null to skip checks)
+     * @return the parse, which can be edited with {@link IncrementalParse#edit}
+     */
+    @Nonnull
+    public static IncrementalParse parseIncremental(@Nonnull String input, @Nullable Player player) {
+        return IncrementalParse.of(input, player);
     }
 
     /**
-     * Processes link patterns in the input.
+     * Cuts a parsed message to at most maxWidth visible characters, ending in "..." if cut.
+     * Gradients keep their original colors.
+     *
+     * @param message the parsed message
+     * @param maxWidth the maximum visible width, ellipsis included
+     * @return the truncated message, or the same message if it already fits
      */
-    private static String processLinks(String input, List<MessageSegment> segments, @Nullable Player player) {
-        if (player != null && !hasPermission(player, Permissions.LINK)) {
-            return input;
-        }
+    @Nonnull
+    public static ParsedMessage truncate(@Nonnull ParsedMessage message, int maxWidth) {
+        return TextLayout.truncate(message, maxWidth, "...", GradientFit.CLIP);
+    }
 
-        StringBuilder result = new StringBuilder();
-        Matcher matcher = LINK_PATTERN.matcher(input);
-        int lastEnd = 0;
+    /**
+     * Cuts a parsed message to at most maxWidth visible characters.
+     *
+     * @param message the parsed message
+     * @param maxWidth the maximum visible width, ellipsis included
+     * @param ellipsis text appended when something was cut (may be empty)
+     * @param fit whether gradients are clipped or recomputed over the kept text
+     * @return the truncated message, or the same message if it already fits
+     */
+    @Nonnull
+    public static ParsedMessage truncate(@Nonnull ParsedMessage message, int maxWidth, @Nonnull String ellipsis,
+                                         @Nonnull GradientFit fit) {
+        return TextLayout.truncate(message, maxWidth, ellipsis, fit);
+    }
 
-        while (matcher.find()) {
-            result.append(input, lastEnd, matcher.start());
+    /**
+     * Word-wraps a parsed message to lines of at most width visible characters.
+     * Styling carries over from one line to the next; gradients keep their original colors.
+     *
+     * @param message the parsed message
+     * @param width the maximum visible width per line
+     * @return the lines
+     */
+    @Nonnull
+    public static List<ParsedMessage> wrap(@Nonnull ParsedMessage message, int width) {
+        return TextLayout.wrap(message, width, GradientFit.CLIP);
+    }
 
-            String url = matcher.group(1);
-            String text = matcher.group(2);
+    /**
+     * Word-wraps a parsed message to lines of at most width visible characters.
+     *
+     * @param message the parsed message
+     * @param width the maximum visible width per line
+     * @param fit whether gradients are clipped or recomputed per line
+     * @return the lines
+     */
+    @Nonnull
+    public static List<ParsedMessage> wrap(@Nonnull ParsedMessage message, int width, @Nonnull GradientFit fit) {
+        return TextLayout.wrap(message, width, fit);
+    }
 
-            // Parse colors in the link text
-            MessageSegment linkSegment = new MessageSegment(text);
-            linkSegment.link = url;
-            segments.add(new MessageSegment(result.toString()));
-            result.setLength(0);
-            segments.add(linkSegment);
+    /**
+     * Pads a parsed message with spaces to the given visible width.
+     *
+     * @param message the parsed message
+     * @param width the target visible width
+     * @param alignment where the text sits within the width
+     * @return the padded message, or the same message if it is already as wide
+     */
+    @Nonnull
+    public static ParsedMessage pad(@Nonnull ParsedMessage message, int width, @Nonnull Alignment alignment) {
+        return TextLayout.pad(message, width, alignment);
+    }
 
-            lastEnd = matcher.end();
-        }
+    /**
+     * Centers a parsed message within the given visible width.
+     */
+    @Nonnull
+    public static ParsedMessage center(@Nonnull ParsedMessage message, int width) {
+        return TextLayout.pad(message, width, Alignment.CENTER);
+    }
 
-        result.append(input.substring(lastEnd));
-        return result.toString();
+    /**
+     * Converts a parsed message back to the shortest equivalent &-coded string.
+     *
+     * @param message the parsed message
+     * @return the coded string
+     */
+    @Nonnull
+    public static String serialize(@Nonnull ParsedMessage message) {
+        return LegacySerializer.serialize(message, new StringBuilder(message.text.length() + 16)).toString();
     }
 
     /**
-     * Processes gradient patterns in the input - now just passes through since gradients
-     * are handled inline in processColorsAndFormats like rainbow mode.
+     * Appends the shortest equivalent &-coded string to a reusable builder,
+     * e.g. when relaying or storing many messages.
+     *
+     * @param message the parsed message
+     * @param out the builder to append to
+     * @return the same builder
      */
-    private static String processGradients(String input, List<MessageSegment> segments, @Nullable Player player) {
-        // Gradients are now handled inline in processColorsAndFormats
-        return input;
+    @Nonnull
+    public static StringBuilder serialize(@Nonnull ParsedMessage message, @Nonnull StringBuilder out) {
+        return LegacySerializer.serialize(message, out);
     }
 
     /**
      * Processes standard color codes and format codes.
      */
-    private static void processColorsAndFormats(String input, List<MessageSegment> segments, @Nullable Player player) {
-        StringBuilder currentText = new StringBuilder();
-        Color currentColor = null;
-        boolean bold = false;
-        boolean italic = false;
-        boolean underline = false;
-        boolean monospace = false;
-        boolean rainbowMode = false;
-        boolean gradientMode = false;
-        List<Color> gradientColors = null;
-        StringBuilder gradientText = new StringBuilder();
-        StringBuilder rainbowText = new StringBuilder();
-
-        int i = 0;
+    private static void processColorsAndFormats(String input, SegmentBuffer segments, @Nullable Player player,
+                                                @Nullable PlaceholderContext context, Degradation degradation) {
+        SegmentWriter writer = new SegmentWriter(segments);
+        degrade(writer, context, degradation);
+        scan(input, writer, player, context);
+
+        // Flush remaining text
+        writer.flush();
+    }
+
+    /**
+     * Sets how far a writer reduces the parse for a sender over their budget.
+     */
+    static void degrade(SegmentWriter writer, @Nullable PlaceholderContext context, Degradation degradation) {
+        if (context != null && context.hasSenderText()) {
+            // Only what the sender wrote is reduced, not the format around it
+            writer.degradeSender(degradation);
+        } else {
+            writer.degrade(degradation);
+        }
+    }
+
+    /**
+     * Scans text for codes and placeholders, writing visible characters in the current style.
+     */
+    static void scan(String input, SegmentWriter writer, @Nullable Player player,
+                     @Nullable PlaceholderContext context) {
+        scan(input, 0, writer, player, context, null);
+    }
+
+    /**
+     * Scans from an offset, reporting each position to the tracer (if any) until it asks to stop.
+     *
+     * @return the position the scan stopped at, or the input length if it ran to the end
+     */
+    static int scan(String input, int from, SegmentWriter writer, @Nullable Player player,
+                    @Nullable PlaceholderContext context, @Nullable IncrementalParse.Tracer tracer) {
+        int i = from;
         while (i < input.length()) {
+            if (tracer != null && !tracer.mark(i, writer)) {
+                return i;
+            }
             char c = input.charAt(i);
 
+            // Check for placeholders: {key}
+            if (c == '{' && context != null) {
+                int end = placeholderEnd(input, i);
+                if (end > 0 && appendPlaceholder(input.substring(i + 1, end), writer, player, context)) {
+                    i = end + 1;
+                    continue;
+                }
+            }
+
             // Check for color/format codes
             if ((c == '&' || c == '§') && i + 1 < input.length()) {
                 char next = input.charAt(i + 1);
 
+                // Check for link: &(url)[text]
+                if (next == '(' && c == '&' && (player == null || hasPermission(player, Permissions.LINK))) {
+                    int end = linkEnd(input, i);
+                    if (end > 0) {
+                        int urlEnd = input.indexOf(')', i + 2);
+                        String text = input.substring(urlEnd + 2, end);
+                        String url = withinLinkLimit(writer) ? LinkPolicy.check(input.substring(i + 2, urlEnd)) : null;
+                        if (url != null) {
+                            writer.link(url, text);
+                        } else {
+                            // Disallowed or over the limit: keep the text, drop the link
+                            writer.append(text, 0, text.length());
+                        }
+                        i = end + 1;
+                        continue;
+                    }
+                }
+
                 // Check for rainbow code: &*
                 if (next == RAINBOW_CODE) {
                     if (player == null || hasPermission(player, Permissions.RAINBOW)) {
-                        // Flush current text first
-                        flushText(segments, currentText, rainbowText, gradientText, rainbowMode, gradientMode, gradientColors, currentColor, bold, italic, underline, monospace);
-                        currentText.setLength(0);
-                        rainbowText.setLength(0);
-                        gradientText.setLength(0);
-                        rainbowMode = true;
-                        gradientMode = false;
-                        gradientColors = null;
-                        currentColor = null;
+                        writer.rainbow();
                     }
                     i += 2;
                     continue;
@@ -176,35 +358,13 @@ public final class ColorParser {
 
                 // Check for gradient: &#hex1:hex2:... or &#name1:name2:...
                 if (next == '#' && i + 2 < input.length()) {
-                    Matcher gradMatcher = GRADIENT_PATTERN.matcher(input.substring(i));
-                    if (gradMatcher.lookingAt()) {
+                    Matcher gradMatcher = matchGradient(input, i);
+                    if (gradMatcher != null) {
                         if (player == null || hasPermission(player, Permissions.GRADIENT)) {
-                            String colorsStr = gradMatcher.group(1);
-                            String[] colorParts = colorsStr.split(":");
-                            List<Color> colors = new ArrayList<>();
-                            boolean valid = true;
-
-                            for (String colorPart : colorParts) {
-                                Color color = ChatColor.parseColor(colorPart);
-                                if (color != null) {
-                                    colors.add(color);
-                                } else {
-                                    valid = false;
-                                    break;
-                                }
-                            }
-
-                            if (valid && colors.size() >= 2) {
-                                // Flush current text
-                                flushText(segments, currentText, rainbowText, gradientText, rainbowMode, gradientMode, gradientColors, currentColor, bold, italic, underline, monospace);
-                                currentText.setLength(0);
-                                rainbowText.setLength(0);
-                                gradientText.setLength(0);
-                                rainbowMode = false;
-                                gradientMode = true;
-                                gradientColors = colors;
-                                currentColor = null;
-                                i += gradMatcher.end();
+                            List<Color> colors = gradientStops(input, gradMatcher);
+                            if (colors != null) {
+                                writer.gradient(colors, gradientMode(gradMatcher));
+                                i = gradMatcher.end();
                                 continue;
                             }
                         }
@@ -212,18 +372,10 @@ public final class ColorParser {
 
                     // Check for simple hex color: &#RRGGBB (not a gradient)
                     if (i + 8 <= input.length()) {
-                        String hexPart = input.substring(i + 2, i + 8);
-                        if (hexPart.matches("[0-9a-fA-F]{6}") && (i + 8 >= input.length() || input.charAt(i + 8) != ':')) {
+                        int rgb = ColorRegistry.parseHex(input, i + 2, i + 8);
+                        if (rgb != -1 && (i + 8 >= input.length() || input.charAt(i + 8) != ':')) {
                             if (player == null || hasPermission(player, Permissions.HEX)) {
-                                // Flush text
-                                flushText(segments, currentText, rainbowText, gradientText, rainbowMode, gradientMode, gradientColors, currentColor, bold, italic, underline, monospace);
-                                currentText.setLength(0);
-                                rainbowText.setLength(0);
-                                gradientText.setLength(0);
-                                rainbowMode = false;
-                                gradientMode = false;
-                                gradientColors = null;
-                                currentColor = ChatColor.parseHex(hexPart);
+                                writer.color(rgb);
                             }
                             i += 8;
                             continue;
@@ -235,15 +387,7 @@ public final class ColorParser {
                 ChatColor color = ChatColor.getByCode(next);
                 if (color != null) {
                     if (player == null || hasPermission(player, Permissions.ALL_COLORS) || hasPermission(player, color.getPermission())) {
-                        // Flush text
-                        flushText(segments, currentText, rainbowText, gradientText, rainbowMode, gradientMode, gradientColors, currentColor, bold, italic, underline, monospace);
-                        currentText.setLength(0);
-                        rainbowText.setLength(0);
-                        gradientText.setLength(0);
-                        rainbowMode = false;
-                        gradientMode = false;
-                        gradientColors = null;
-                        currentColor = color.getColor();
+                        writer.color(color.getColor().getRGB() & 0xFFFFFF);
                     }
                     i += 2;
                     continue;
@@ -253,134 +397,212 @@ public final class ColorParser {
                 ChatFormat format = ChatFormat.getByCode(next);
                 if (format != null) {
                     if (player == null || hasPermission(player, Permissions.ALL_FORMATS) || hasPermission(player, format.getPermission())) {
-                        // Flush text
-                        flushText(segments, currentText, rainbowText, gradientText, rainbowMode, gradientMode, gradientColors, currentColor, bold, italic, underline, monospace);
-                        currentText.setLength(0);
-                        rainbowText.setLength(0);
-                        gradientText.setLength(0);
-
-                        switch (format) {
-                            case BOLD -> bold = true;
-                            case ITALIC -> italic = true;
-                            case UNDERLINE -> underline = true;
-                            case MONOSPACE -> monospace = true;
-                            case RESET -> {
-                                rainbowMode = false;
-                                gradientMode = false;
-                                gradientColors = null;
-                                currentColor = null;
-                                bold = false;
-                                italic = false;
-                                underline = false;
-                                monospace = false;
-                            }
-                        }
+                        writer.format(format);
                     }
                     i += 2;
                     continue;
                 }
             }
 
-            // Append character to appropriate buffer
-            if (rainbowMode) {
-                rainbowText.append(c);
-            } else if (gradientMode) {
-                gradientText.append(c);
-            } else {
-                currentText.append(c);
-            }
+            // Append character in the current style
+            writer.append(c);
             i++;
         }
-
-        // Flush remaining text
-        flushText(segments, currentText, rainbowText, gradientText, rainbowMode, gradientMode, gradientColors, currentColor, bold, italic, underline, monospace);
+        return i;
     }
 
     /**
-     * Flushes accumulated text to segments.
+     * Finds how far past index the scan may look when a code starts there, exclusive.
+     * Mirrors the checks in {@link #scan}; anything that reads to the end of the
+     * input counts as one past it, since appending text could change the outcome.
      */
-    private static void flushText(List<MessageSegment> segments, StringBuilder currentText, StringBuilder rainbowText,
-                                   StringBuilder gradientText, boolean rainbowMode, boolean gradientMode,
-                                   List<Color> gradientColors, Color currentColor, boolean bold, boolean italic,
-                                   boolean underline, boolean monospace) {
-        if (rainbowMode && !rainbowText.isEmpty()) {
-            // Generate rainbow gradient for the text
-            String text = rainbowText.toString();
-            List<Color> colors = GradientUtil.generateMultiGradient(RAINBOW_COLORS, text.length());
-            for (int j = 0; j < text.length(); j++) {
-                MessageSegment seg = new MessageSegment(String.valueOf(text.charAt(j)));
-                seg.color = colors.get(j);
-                seg.bold = bold;
-                seg.italic = italic;
-                seg.underline = underline;
-                seg.monospace = monospace;
-                segments.add(seg);
+    static int lookahead(String input, int index) {
+        int length = input.length();
+        if (index + 1 >= length) {
+            return index + 2;
+        }
+        char next = input.charAt(index + 1);
+        if (next == '(') {
+            int urlEnd = input.indexOf(')', index + 2);
+            if (urlEnd < 0 || urlEnd + 1 >= length) {
+                return length + 1;
+            }
+            if (urlEnd <= index + 2 || input.charAt(urlEnd + 1) != '[') {
+                return urlEnd + 2;
             }
-        } else if (gradientMode && !gradientText.isEmpty() && gradientColors != null) {
-            // Generate custom gradient for the text
-            String text = gradientText.toString();
-            List<Color> colors = GradientUtil.generateMultiGradient(gradientColors, text.length());
-            for (int j = 0; j < text.length(); j++) {
-                MessageSegment seg = new MessageSegment(String.valueOf(text.charAt(j)));
-                seg.color = colors.get(j);
-                seg.bold = bold;
-                seg.italic = italic;
-                seg.underline = underline;
-                seg.monospace = monospace;
-                segments.add(seg);
+            int textEnd = input.indexOf(']', urlEnd + 2);
+            return textEnd < 0 ? length + 1 : textEnd + 1;
+        }
+        if (next == '#') {
+            // The gradient pattern only consumes letters, digits, '_', ':' and '@'
+            int end = index + 2;
+            while (end < length && isGradientChar(input.charAt(end))) {
+                end++;
             }
-        } else if (!currentText.isEmpty()) {
-            MessageSegment seg = new MessageSegment(currentText.toString());
-            seg.color = currentColor;
-            seg.bold = bold;
-            seg.italic = italic;
-            seg.underline = underline;
-            seg.monospace = monospace;
-            segments.add(seg);
+            return Math.min(length + 1, Math.max(end + 1, index + 9));
         }
+        return index + 2;
+    }
+
+    private static boolean isGradientChar(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == ':' || c == '@';
     }
 
     /**
-     * Builds the final Message from segments.
+     * Writes the value of a {key} placeholder: trusted values are scanned for codes,
+     * which apply only within the value, untrusted ones are plain text. Sender text,
+     * fingerprints and filters are applied as the context asks for the key.
+     *
+     * @return false if the context has no value for the key
      */
-    private static Message buildMessage(List<MessageSegment> segments) {
-        if (segments.isEmpty()) {
-            return Message.raw("");
+    static boolean appendPlaceholder(String key, SegmentWriter writer, @Nullable Player player,
+                                     @Nonnull PlaceholderContext context) {
+        PlaceholderContext.Resolved resolved = context.resolve(key);
+        if (resolved == null) {
+            return false;
+        }
+        boolean fromSender = context.isFromSender(key);
+        if (fromSender) {
+            writer.startSender();
         }
+        boolean fingerprinted = context.isFingerprinted(key);
+        if (fingerprinted) {
+            writer.startFingerprint();
+        }
+        WordFilter filter = context.filterFor(key);
+        if (filter != null) {
+            writer.startFilter(filter);
+        }
+        if (resolved.trusted) {
+            // Codes in the value apply only within it; nested placeholders are not expanded
+            SegmentWriter.Saved saved = writer.save();
+            scan(resolved.value, writer, player, null);
+            writer.restore(saved);
+        } else {
+            writer.append(resolved.value, 0, resolved.value.length());
+        }
+        if (fingerprinted) {
+            context.setFingerprint(writer.endFingerprint());
+        }
+        if (filter != null) {
+            writer.endFilter();
+        }
+        if (fromSender) {
+            context.setSenderText(writer.endSender());
+        }
+        return true;
+    }
 
-        Message result = null;
+    /**
+     * Matches a gradient code &amp;#a:b[@mode] starting at index, or null if there is none.
+     */
+    @Nullable
+    static Matcher matchGradient(String input, int index) {
+        Matcher matcher = GRADIENT_PATTERN.matcher(input).region(index, input.length());
+        return matcher.lookingAt() ? matcher : null;
+    }
 
-        for (MessageSegment segment : segments) {
-            if (segment.text.isEmpty() && segment.link == null) {
-                continue;
+    /**
+     * Resolves the stops of a matched gradient code through the registry, or null
+     * if one is unknown.
+     */
+    @Nullable
+    static List<Color> gradientStops(String input, Matcher matcher) {
+        List<Color> colors = new ArrayList<>();
+        // Resolve each stop in place through the registry
+        int stopStart = matcher.start(1);
+        int stopsEnd = matcher.end(1);
+        while (stopStart < stopsEnd) {
+            int stopEnd = input.indexOf(':', stopStart);
+            if (stopEnd < 0 || stopEnd > stopsEnd) {
+                stopEnd = stopsEnd;
+            }
+            int rgb = ColorRegistry.resolve(input, stopStart, stopEnd);
+            if (rgb == -1) {
+                return null;
             }
+            colors.add(new Color(rgb));
+            stopStart = stopEnd + 1;
+        }
+        return colors.size() >= 2 ? colors : null;
+    }
 
-            Message msg = Message.raw(segment.text);
+    /**
+     * Gets the interpolation of a matched gradient code, linear when it has no @mode.
+     */
+    @Nonnull
+    static Interpolation gradientMode(Matcher matcher) {
+        return matcher.group(2) != null ? Interpolation.getByName(matcher.group(2)) : Interpolation.LINEAR;
+    }
 
-            if (segment.color != null) {
-                msg = msg.color(segment.color);
-            }
-            if (segment.bold) {
-                msg = msg.bold(true);
-            }
-            if (segment.italic) {
-                msg = msg.italic(true);
-            }
-            if (segment.monospace) {
-                msg = msg.monospace(true);
-            }
-            if (segment.link != null) {
-                msg = msg.link(segment.link);
+    /**
+     * Finds the closing ] of a link &(url)[text] starting at start, or -1 if the
+     * markup is incomplete. Neither the url nor the text may be empty.
+     */
+    static int linkEnd(String input, int start) {
+        int urlEnd = input.indexOf(')', start + 2);
+        if (urlEnd <= start + 2 || urlEnd + 1 >= input.length() || input.charAt(urlEnd + 1) != '[') {
+            return -1;
+        }
+        int textEnd = input.indexOf(']', urlEnd + 2);
+        return textEnd > urlEnd + 2 ? textEnd : -1;
+    }
+
+    static boolean withinLinkLimit(SegmentWriter writer) {
+        SimpleColorConfig config = SimpleColor.getConfig();
+        int max = config != null ? config.getMaxLinksPerMessage() : 0;
+        return max <= 0 || writer.getLinkCount() < max;
+    }
+
+    /**
+     * Whether the input contains a {key} placeholder.
+     */
+    static boolean hasPlaceholders(String input) {
+        for (int i = input.indexOf('{'); i >= 0; i = input.indexOf('{', i + 1)) {
+            if (placeholderEnd(input, i) > 0) {
+                return true;
             }
+        }
+        return false;
+    }
 
-            if (result == null) {
-                result = msg;
-            } else {
-                result = result.insert(msg);
+    /**
+     * Finds the closing brace of a {key} placeholder starting at start, or -1 if there is none.
+     */
+    static int placeholderEnd(String input, int start) {
+        int limit = Math.min(input.length(), start + 2 + PlaceholderContext.MAX_KEY_LENGTH);
+        for (int i = start + 1; i < limit; i++) {
+            char c = input.charAt(i);
+            if (c == '}') {
+                return i > start + 1 ? i : -1;
+            }
+            if (!PlaceholderContext.isKeyChar(c)) {
+                return -1;
             }
         }
+        return -1;
+    }
+
+    /**
+     * Packs format flags into a segment style.
+     */
+    static int style(boolean bold, boolean italic, boolean underline, boolean monospace) {
+        return (bold ? ParsedMessage.BOLD : 0)
+                | (italic ? ParsedMessage.ITALIC : 0)
+                | (underline ? ParsedMessage.UNDERLINE : 0)
+                | (monospace ? ParsedMessage.MONOSPACE : 0);
+    }
 
-        return result != null ? result : Message.raw("");
+    /**
+     * Joins the interpolation mode names into a regex alternation.
+     */
+    private static String interpolationNames() {
+        StringBuilder names = new StringBuilder();
+        for (Interpolation mode : Interpolation.values()) {
+            if (!names.isEmpty()) names.append('|');
+            names.append(mode.getName());
+        }
+        return names.toString();
     }
 
     /**
@@ -414,34 +636,17 @@ public final class ColorParser {
         String result = input;
 
         // Remove links
-        result = LINK_PATTERN.matcher(result).replaceAll("$2");
+        result = StripPatterns.LINK_PATTERN.matcher(result).replaceAll("$2");
 
         // Remove gradients (now without braces)
         result = GRADIENT_PATTERN.matcher(result).replaceAll("");
 
         // Remove hex codes
-        result = HEX_PATTERN.matcher(result).replaceAll("");
+        result = StripPatterns.HEX_PATTERN.matcher(result).replaceAll("");
 
         // Remove legacy codes
-        result = LEGACY_PATTERN.matcher(result).replaceAll("");
+        result = StripPatterns.LEGACY_PATTERN.matcher(result).replaceAll("");
 
         return result;
     }
-
-    /**
-     * Internal class representing a message segment.
-     */
-    private static class MessageSegment {
-        String text;
-        Color color;
-        boolean bold;
-        boolean italic;
-        boolean underline;
-        boolean monospace;
-        String link;
-
-        MessageSegment(String text) {
-            this.text = text;
-        }
-    }
 }
@@ -0,0 +1,320 @@
+package org.slamstudios.simplecolor;
+
+import org.slamstudios.simplecolor.enums.ChatColor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Registry of color names usable in gradients and builders.
+ *
+ * Holds the 16 legacy colors, the CSS named colors and any custom (e.g.
+ * brand) colors from the config. Legacy names always win, so "red" keeps
+ * meaning &amp;c; custom colors may replace CSS ones.
+ *
+ * Lookups are case-insensitive, work on a range of a larger string and do
+ * not allocate: names are compiled into a perfect hash table, so each
+ * lookup hashes the range twice and compares against at most one name.
+ */
+public final class ColorRegistry {
+
+    private ColorRegistry() {}
+
+    private static final String[] CSS_COLORS = {
+            "aliceblue", "f0f8ff", "antiquewhite", "faebd7", "aqua", "00ffff", "aquamarine", "7fffd4",
+            "azure", "f0ffff", "beige", "f5f5dc", "bisque", "ffe4c4", "black", "000000",
+            "blanchedalmond", "ffebcd", "blue", "0000ff", "blueviolet", "8a2be2", "brown", "a52a2a",
+            "burlywood", "deb887", "cadetblue", "5f9ea0", "chartreuse", "7fff00", "chocolate", "d2691e",
+            "coral", "ff7f50", "cornflowerblue", "6495ed", "cornsilk", "fff8dc", "crimson", "dc143c",
+            "cyan", "00ffff", "darkblue", "00008b", "darkcyan", "008b8b", "darkgoldenrod", "b8860b",
+            "darkgray", "a9a9a9", "darkgreen", "006400", "darkgrey", "a9a9a9", "darkkhaki", "bdb76b",
+            "darkmagenta", "8b008b", "darkolivegreen", "556b2f", "darkorange", "ff8c00", "darkorchid", "9932cc",
+            "darkred", "8b0000", "darksalmon", "e9967a", "darkseagreen", "8fbc8f", "darkslateblue", "483d8b",
+            "darkslategray", "2f4f4f", "darkslategrey", "2f4f4f", "darkturquoise", "00ced1", "darkviolet", "9400d3",
+            "deeppink", "ff1493", "deepskyblue", "00bfff", "dimgray", "696969", "dimgrey", "696969",
+            "dodgerblue", "1e90ff", "firebrick", "b22222", "floralwhite", "fffaf0", "forestgreen", "228b22",
+            "fuchsia", "ff00ff", "gainsboro", "dcdcdc", "ghostwhite", "f8f8ff", "gold", "ffd700",
+            "goldenrod", "daa520", "gray", "808080", "green", "008000", "greenyellow", "adff2f",
+            "grey", "808080", "honeydew", "f0fff0", "hotpink", "ff69b4", "indianred", "cd5c5c",
+            "indigo", "4b0082", "ivory", "fffff0", "khaki", "f0e68c", "lavender", "e6e6fa",
+            "lavenderblush", "fff0f5", "lawngreen", "7cfc00", "lemonchiffon", "fffacd", "lightblue", "add8e6",
+            "lightcoral", "f08080", "lightcyan", "e0ffff", "lightgoldenrodyellow", "fafad2", "lightgray", "d3d3d3",
+            "lightgreen", "90ee90", "lightgrey", "d3d3d3", "lightpink", "ffb6c1", "lightsalmon", "ffa07a",
+            "lightseagreen", "20b2aa", "lightskyblue", "87cefa", "lightslategray", "778899", "lightslategrey", "778899",
+            "lightsteelblue", "b0c4de", "lightyellow", "ffffe0", "lime", "00ff00", "limegreen", "32cd32",
+            "linen", "faf0e6", "magenta", "ff00ff", "maroon", "800000", "mediumaquamarine", "66cdaa",
+            "mediumblue", "0000cd", "mediumorchid", "ba55d3", "mediumpurple", "9370db", "mediumseagreen", "3cb371",
+            "mediumslateblue", "7b68ee", "mediumspringgreen", "00fa9a", "mediumturquoise", "48d1cc", "mediumvioletred", "c71585",
+            "midnightblue", "191970", "mintcream", "f5fffa", "mistyrose", "ffe4e1", "moccasin", "ffe4b5",
+            "navajowhite", "ffdead", "navy", "000080", "oldlace", "fdf5e6", "olive", "808000",
+            "olivedrab", "6b8e23", "orange", "ffa500", "orangered", "ff4500", "orchid", "da70d6",
+            "palegoldenrod", "eee8aa", "palegreen", "98fb98", "paleturquoise", "afeeee", "palevioletred", "db7093",
+            "papayawhip", "ffefd5", "peachpuff", "ffdab9", "peru", "cd853f", "pink", "ffc0cb",
+            "plum", "dda0dd", "powderblue", "b0e0e6", "purple", "800080", "rebeccapurple", "663399",
+            "red", "ff0000", "rosybrown", "bc8f8f", "royalblue", "4169e1", "saddlebrown", "8b4513",
+            "salmon", "fa8072", "sandybrown", "f4a460", "seagreen", "2e8b57", "seashell", "fff5ee",
+            "sienna", "a0522d", "silver", "c0c0c0", "skyblue", "87ceeb", "slateblue", "6a5acd",
+            "slategray", "708090", "slategrey", "708090", "snow", "fffafa", "springgreen", "00ff7f",
+            "steelblue", "4682b4", "tan", "d2b48c", "teal", "008080", "thistle", "d8bfd8",
+            "tomato", "ff6347", "turquoise", "40e0d0", "violet", "ee82ee", "wheat", "f5deb3",
+            "white", "ffffff", "whitesmoke", "f5f5f5", "yellow", "ffff00", "yellowgreen", "9acd32"
+    };
+
+    // Custom colors in registration order; guarded by the class lock, published through TABLE
+    private static final Map<String, Integer> CUSTOM = new LinkedHashMap<>();
+    private static volatile Table table = compile();
+
+    /**
+     * Looks up a named color, ignoring case.
+     *
+     * @return the packed RGB value, or -1 if the name is unknown
+     */
+    public static int lookup(@Nonnull CharSequence name) {
+        return lookup(name, 0, name.length());
+    }
+
+    /**
+     * Looks up the color named by a range of text, ignoring case.
+     *
+     * @return the packed RGB value, or -1 if the name is unknown
+     */
+    public static int lookup(@Nonnull CharSequence text, int from, int to) {
+        return table.get(text, from, to);
+    }
+
+    /**
+     * Resolves a color name or a 6-digit hex code (without #) in a range of text.
+     *
+     * @return the packed RGB value, or -1 if the range is neither
+     */
+    public static int resolve(@Nonnull CharSequence text, int from, int to) {
+        int named = lookup(text, from, to);
+        if (named != -1 || to - from != 6) {
+            return named;
+        }
+        return parseHex(text, from, to);
+    }
+
+    /**
+     * Resolves a color name or a 6-digit hex code (#RRGGBB or RRGGBB), as a Color.
+     */
+    @Nullable
+    public static Color resolve(@Nonnull CharSequence text) {
+        int from = text.length() > 0 && text.charAt(0) == '#' ? 1 : 0;
+        int rgb = resolve(text, from, text.length());
+        return rgb != -1 ? new Color(rgb) : null;
+    }
+
+    /**
+     * Adds or replaces a custom color. Names are letters and underscores; legacy color names cannot be replaced.
+     */
+    public static synchronized void register(@Nonnull String name, @Nonnull Color color) {
+        if (!isValidName(name)) {
+            throw new IllegalArgumentException("Invalid color name: " + name);
+        }
+        if (ChatColor.getByName(name) != null) {
+            throw new IllegalArgumentException("Cannot replace legacy color: " + name);
+        }
+        CUSTOM.put(name.toLowerCase(Locale.ROOT), color.getRGB() & 0xFFFFFF);
+        table = compile();
+    }
+
+    /**
+     * Removes a custom color.
+     */
+    public static synchronized void unregister(@Nonnull String name) {
+        if (CUSTOM.remove(name.toLowerCase(Locale.ROOT)) != null) {
+            table = compile();
+        }
+    }
+
+    /**
+     * Replaces all custom colors at once, e.g. on config reload.
+     * Entries that are not a valid name with a valid hex code are skipped.
+     *
+     * @param colors names mapped to hex codes (#RRGGBB or RRGGBB)
+     * @return the names that were skipped
+     */
+    @Nonnull
+    public static synchronized List<String> setCustomColors(@Nonnull Map<String, String> colors) {
+        List<String> rejected = new ArrayList<>();
+        CUSTOM.clear();
+        for (Map.Entry<String, String> entry : colors.entrySet()) {
+            String name = entry.getKey();
+            String hex = entry.getValue() != null && entry.getValue().startsWith("#")
+                    ? entry.getValue().substring(1) : entry.getValue();
+            int rgb = hex != null && hex.length() == 6 ? parseHex(hex, 0, 6) : -1;
+            if (rgb == -1 || !isValidName(name) || ChatColor.getByName(name) != null) {
+                rejected.add(name);
+                continue;
+            }
+            CUSTOM.put(name.toLowerCase(Locale.ROOT), rgb);
+        }
+        table = compile();
+        return rejected;
+    }
+
+    /**
+     * Parses hex digits in a range without allocating. Only ASCII 0-9, a-f
+     * and A-F are digits; Character.digit would also take e.g. fullwidth ones.
+     *
+     * @return the value, or -1 if any character is not a hex digit
+     */
+    static int parseHex(@Nonnull CharSequence text, int from, int to) {
+        int rgb = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'a' && c <= 'f') {
+                digit = c - 'a' + 10;
+            } else if (c >= 'A' && c <= 'F') {
+                digit = c - 'A' + 10;
+            } else {
+                return -1;
+            }
+            rgb = rgb << 4 | digit;
+        }
+        return rgb;
+    }
+
+    /**
+     * Names must be usable in a gradient spec like &amp;#name:name.
+     */
+    private static boolean isValidName(String name) {
+        if (name == null || name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Table compile() {
+        // Later puts win: CSS, then custom, then legacy
+        Map<String, Integer> all = new LinkedHashMap<>();
+        for (int i = 0; i < CSS_COLORS.length; i += 2) {
+            all.put(CSS_COLORS[i], Integer.parseInt(CSS_COLORS[i + 1], 16));
+        }
+        all.putAll(CUSTOM);
+        for (ChatColor color : ChatColor.values()) {
+            all.put(color.getName(), color.getColor().getRGB() & 0xFFFFFF);
+        }
+        return new Table(all);
+    }
+
+    /**
+     * Two-level perfect hash: a name's first hash picks a bucket, and the
+     * bucket's seed gives the second hash that lands it in a slot no other
+     * name uses.
+     */
+    private static final class Table {
+        private final int[] seeds;
+        private final char[][] keys;
+        private final int[] values;
+
+        Table(Map<String, Integer> entries) {
+            int bucketCount = Integer.highestOneBit(Math.max(1, entries.size() / 2)) << 1;
+            int slotCount = Integer.highestOneBit(Math.max(1, entries.size())) << 2;
+            seeds = new int[bucketCount];
+            keys = new char[slotCount][];
+            values = new int[slotCount];
+
+            List<List<String>> buckets = new ArrayList<>(bucketCount);
+            for (int b = 0; b < bucketCount; b++) {
+                buckets.add(new ArrayList<>());
+            }
+            for (String name : entries.keySet()) {
+                buckets.get(hash(name, 0, name.length(), 0) & (bucketCount - 1)).add(name);
+            }
+
+            // Place the fullest buckets first, while most slots are still free
+            Integer[] order = new Integer[bucketCount];
+            for (int b = 0; b < bucketCount; b++) {
+                order[b] = b;
+            }
+            Arrays.sort(order, (a, b) -> buckets.get(b).size() - buckets.get(a).size());
+
+            int[] placed = new int[8];
+            for (int b : order) {
+                List<String> names = buckets.get(b);
+                if (names.isEmpty()) {
+                    break;
+                }
+                if (placed.length < names.size()) {
+                    placed = new int[names.size()];
+                }
+                for (int seed = 1; ; seed++) {
+                    if (tryPlace(names, seed, slotCount, placed)) {
+                        seeds[b] = seed;
+                        for (int k = 0; k < names.size(); k++) {
+                            keys[placed[k]] = names.get(k).toCharArray();
+                            values[placed[k]] = entries.get(names.get(k));
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        private boolean tryPlace(List<String> names, int seed, int slotCount, int[] placed) {
+            for (int k = 0; k < names.size(); k++) {
+                String name = names.get(k);
+                int slot = hash(name, 0, name.length(), seed) & (slotCount - 1);
+                if (keys[slot] != null) {
+                    return false;
+                }
+                for (int j = 0; j < k; j++) {
+                    if (placed[j] == slot) {
+                        return false;
+                    }
+                }
+                placed[k] = slot;
+            }
+            return true;
+        }
+
+        int get(CharSequence text, int from, int to) {
+            int seed = seeds[hash(text, from, to, 0) & (seeds.length - 1)];
+            if (seed == 0) {
+                return -1;
+            }
+            int slot = hash(text, from, to, seed) & (keys.length - 1);
+            char[] key = keys[slot];
+            if (key == null || key.length != to - from) {
+                return -1;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (lower(text.charAt(from + i)) != key[i]) {
+                    return -1;
+                }
+            }
+            return values[slot];
+        }
+
+        private static int hash(CharSequence text, int from, int to, int seed) {
+            int h = 0x811C9DC5 ^ seed * 0x9E3779B9;
+            for (int i = from; i < to; i++) {
+                h = (h ^ lower(text.charAt(i))) * 0x01000193;
+            }
+            return h ^ h >>> 16;
+        }
+
+        // Names are ASCII, so only A-Z needs folding
+        private static char lower(char c) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.slamstudios.simplecolor;
+
+import com.hypixel.hytale.server.core.Message;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * A message from a {@link MessageCatalog}. Only refers to its slice of the
+ * locale's shared arrays; the ParsedMessage, or the compiled template of a
+ * message with placeholders, is built when first asked for and kept with
+ * the locale, so every lookup of the key shares it.
+ */
+public final class CompiledMessage {
+
+    private final MessageCatalog.Table table;
+    private final int index;
+
+    CompiledMessage(@Nonnull MessageCatalog.Table table, int index) {
+        this.table = table;
+        this.index = index;
+    }
+
+    /**
+     * Gets the key this message is stored under.
+     */
+    @Nonnull
+    public String getKey() {
+        return table.keys[index];
+    }
+
+    /**
+     * Whether the message contains {key} placeholders.
+     */
+    public boolean hasPlaceholders() {
+        return table.templates[index];
+    }
+
+    /**
+     * Gets the parsed message, with any {key} placeholders left as written.
+     */
+    @Nonnull
+    public ParsedMessage toParsedMessage() {
+        return format(null);
+    }
+
+    /**
+     * Gets the parsed message with placeholders filled from the context.
+     */
+    @Nonnull
+    public ParsedMessage format(@Nullable PlaceholderContext context) {
+        if (table.templates[index]) {
+            Template template = table.compiled.get(index);
+            if (template == null) {
+                // Racing threads compile equal templates; whichever is stored last is kept
+                template = Template.compile(text());
+                table.compiled.set(index, template);
+            }
+            return template.render(context);
+        }
+        ParsedMessage message = table.built.get(index);
+        if (message == null) {
+            message = build();
+            table.built.set(index, message);
+        }
+        return message;
+    }
+
+    /**
+     * Copies the message out of the shared arrays.
+     */
+    private ParsedMessage build() {
+        String text = text();
+        int first = table.segmentStarts[index];
+        int last = table.segmentStarts[index + 1];
+        if (first == last) {
+            return ParsedMessage.EMPTY;
+        }
+
+        String[] links = null;
+        if (table.linkIds != null) {
+            for (int s = first; s < last; s++) {
+                int link = table.linkIds[s];
+                if (link >= 0) {
+                    if (links == null) {
+                        links = new String[last - first];
+                    }
+                    links[s - first] = table.linkPool[link];
+                }
+            }
+        }
+
+        int[] gradientIndex = null;
+        int[] gradientOffset = null;
+        GradientSpec[] gradients = null;
+        if (table.gradientIds != null) {
+            // Renumber the pool entries this message uses, in order of first use
+            int used = 0;
+            gradientIndex = new int[last - first];
+            gradients = new GradientSpec[last - first];
+            for (int s = first; s < last; s++) {
+                int id = table.gradientIds[s];
+                int local = -1;
+                if (id >= 0) {
+                    GradientSpec gradient = table.gradientPool[id];
+                    for (int g = 0; g < used && local < 0; g++) {
+                        if (gradients[g] == gradient) {
+                            local = g;
+                        }
+                    }
+                    if (local < 0) {
+                        gradients[used] = gradient;
+                        local = used++;
+                    }
+                }
+                gradientIndex[s - first] = local;
+            }
+            if (used == 0) {
+                gradientIndex = null;
+                gradients = null;
+            } else {
+                gradientOffset = Arrays.copyOfRange(table.gradientOffsets, first, last);
+                gradients = Arrays.copyOf(gradients, used);
+            }
+        }
+
+        return new ParsedMessage(text, last - first,
+                Arrays.copyOfRange(table.ends, first, last),
+                Arrays.copyOfRange(table.colors, first, last),
+                Arrays.copyOfRange(table.styles, first, last),
+                links, gradientIndex, gradientOffset, gradients);
+    }
+
+    private String text() {
+        int from = table.charStarts[index];
+        return new String(table.chars, from, table.charStarts[index + 1] - from);
+    }
+
+    /**
+     * Builds the Message, with any {key} placeholders left as written.
+     */
+    @Nonnull
+    public Message toMessage() {
+        return toParsedMessage().toMessage();
+    }
+}
@@ -0,0 +1,94 @@
+package org.slamstudios.simplecolor;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background writer for config files.
+ *
+ * Writes go to a temporary sibling file which is flushed to disk and then
+ * atomically moved over the target, so a crash mid-write never leaves a
+ * truncated config behind.
+ */
+final class ConfigWriter {
+
+    private ConfigWriter() {}
+
+    private static final Object LOCK = new Object();
+    private static ThreadPoolExecutor executor;
+
+    /**
+     * Queues a task on the writer thread.
+     */
+    static void submit(@Nonnull Runnable task) {
+        synchronized (LOCK) {
+            if (executor == null || executor.isShutdown()) {
+                executor = createExecutor();
+            }
+            executor.execute(task);
+        }
+    }
+
+    /**
+     * Stops accepting new writes. Already queued writes still complete, but
+     * the caller does not wait for them.
+     */
+    static void shutdown() {
+        synchronized (LOCK) {
+            if (executor != null) {
+                executor.shutdown();
+                executor = null;
+            }
+        }
+    }
+
+    /**
+     * Writes content to the target path through a temp file and an atomic move.
+     */
+    static void writeAtomically(@Nonnull Path target, @Nonnull String content) throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        // Non-daemon so a save queued during shutdown still reaches disk;
+        // the idle timeout lets the thread exit once the queue drains.
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 5, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "SimpleColor-ConfigWriter");
+                    thread.setDaemon(false);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
@@ -0,0 +1,234 @@
+package org.slamstudios.simplecolor;
+
+import com.hypixel.hytale.server.core.Message;
+import org.slamstudios.simplecolor.enums.ChatFormat;
+import org.slamstudios.simplecolor.enums.Interpolation;
+
+import javax.annotation.Nonnull;
+import java.awt.Color;
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Animated gradient that cycles its colors across the text.
+ *
+ * All frames are built once up front and kept in a ring, so getting the
+ * message for a tick is an array lookup instead of a parse.
+ *
+ * Example:
+ * <pre>
+ * GradientAnimation anim = GradientAnimation.rainbow("Welcome!", 20);
+ * player.sendMessage(anim.frame(tick));
+ * </pre>
+ */
+public final class GradientAnimation {
+
+    // Shared instances so many viewers of the same animation reuse one frame ring
+    private static final int MAX_SHARED = 256;
+    private static final Map<Key, GradientAnimation> SHARED = new ConcurrentHashMap<>();
+
+    private final String text;
+    private final Message[] frames;
+
+    private GradientAnimation(@Nonnull String text, @Nonnull List<Color> stops, int frameCount,
+                              boolean graphemeClusters, @Nonnull ChatFormat... formats) {
+        if (stops.isEmpty()) {
+            throw new IllegalArgumentException("At least one color is required");
+        }
+        if (frameCount < 1) {
+            throw new IllegalArgumentException("Frame count must be at least 1");
+        }
+        this.text = text;
+        this.frames = buildFrames(text, stops, frameCount, graphemeClusters, formats);
+    }
+
+    /**
+     * Creates an animation that scrolls a gradient through the given color stops.
+     * The stops are looped back to the first color so the animation wraps seamlessly.
+     *
+     * @param text the plain text to animate
+     * @param stops the gradient color stops
+     * @param frameCount the number of frames in one full cycle
+     * @param formats optional formats applied to every character
+     * @return the animation
+     */
+    @Nonnull
+    public static GradientAnimation of(@Nonnull String text, @Nonnull List<Color> stops, int frameCount,
+                                       @Nonnull ChatFormat... formats) {
+        return new GradientAnimation(text, stops, frameCount, graphemeClusters(), formats);
+    }
+
+    /**
+     * Creates an animated rainbow.
+     *
+     * @param text the plain text to animate
+     * @param frameCount the number of frames in one full cycle
+     * @param formats optional formats applied to every character
+     * @return the animation
+     */
+    @Nonnull
+    public static GradientAnimation rainbow(@Nonnull String text, int frameCount, @Nonnull ChatFormat... formats) {
+        return of(text, ColorParser.RAINBOW_COLORS, frameCount, formats);
+    }
+
+    /**
+     * Gets a shared animation for the given parameters, building it on first use.
+     * Callers asking for the same text, stops, frame count and formats get the same instance.
+     */
+    @Nonnull
+    public static GradientAnimation shared(@Nonnull String text, @Nonnull List<Color> stops, int frameCount,
+                                           @Nonnull ChatFormat... formats) {
+        // The unit mode is part of the key, so toggling it in the config builds new frames
+        Key key = new Key(text, List.copyOf(stops), frameCount, graphemeClusters(), formats.clone());
+        GradientAnimation animation = SHARED.get(key);
+        if (animation != null) {
+            return animation;
+        }
+        if (SHARED.size() >= MAX_SHARED) {
+            SHARED.clear();
+        }
+        return SHARED.computeIfAbsent(key,
+                k -> new GradientAnimation(k.text, k.stops, k.frameCount, k.graphemeClusters, k.formats));
+    }
+
+    /**
+     * Gets a shared animated rainbow.
+     */
+    @Nonnull
+    public static GradientAnimation sharedRainbow(@Nonnull String text, int frameCount, @Nonnull ChatFormat... formats) {
+        return shared(text, ColorParser.RAINBOW_COLORS, frameCount, formats);
+    }
+
+    /**
+     * Gets the frame to show on the given tick. Ticks wrap around the ring,
+     * negative ticks included.
+     */
+    @Nonnull
+    public Message frame(long tick) {
+        return frames[(int) Math.floorMod(tick, (long) frames.length)];
+    }
+
+    /**
+     * Gets the number of frames in one cycle.
+     */
+    public int getFrameCount() {
+        return frames.length;
+    }
+
+    /**
+     * Gets the animated text.
+     */
+    @Nonnull
+    public String getText() {
+        return text;
+    }
+
+    private static Message[] buildFrames(String text, List<Color> stops, int frameCount, boolean graphemeClusters,
+                                         ChatFormat[] formats) {
+        // One loop around the stops, sampled once per frame
+        List<Color> loop = new ArrayList<>(stops.size() + 1);
+        loop.addAll(stops);
+        loop.add(stops.getFirst());
+        int[] ring = GradientUtil.generatePacked(loop, frameCount, Interpolation.LINEAR);
+
+        boolean bold = false;
+        boolean italic = false;
+        boolean underline = false;
+        boolean monospace = false;
+        for (ChatFormat format : formats) {
+            switch (format) {
+                case BOLD -> bold = true;
+                case ITALIC -> italic = true;
+                case UNDERLINE -> underline = true;
+                case MONOSPACE -> monospace = true;
+                case RESET -> {}
+            }
+        }
+        int style = ColorParser.style(bold, italic, underline, monospace);
+
+        // Colored per code point or grapheme cluster like parsed gradients, so emoji stay whole
+        int[] unitEnds = unitEnds(text, graphemeClusters);
+        int units = unitEnds.length;
+        Message[] frames = new Message[frameCount];
+        for (int frame = 0; frame < frameCount; frame++) {
+            SegmentBuffer segments = new SegmentBuffer(text.length());
+            int start = 0;
+            for (int j = 0; j < units; j++) {
+                // Spread one full cycle across the text and shift it by one ring slot per frame
+                int offset = (int) ((long) j * frameCount / units);
+                int color = ring[Math.floorMod(offset - frame, frameCount)];
+                segments.append(text, start, unitEnds[j], color, style, null);
+                start = unitEnds[j];
+            }
+            frames[frame] = segments.build().toMessage();
+        }
+        return frames;
+    }
+
+    /**
+     * Whether the config asks for gradients to step per grapheme cluster.
+     */
+    private static boolean graphemeClusters() {
+        SimpleColorConfig config = SimpleColor.getConfig();
+        return config != null && config.isGradientGraphemeClusters();
+    }
+
+    /**
+     * Gets where each unit of the text ends: grapheme clusters or code points.
+     */
+    private static int[] unitEnds(String text, boolean graphemeClusters) {
+        if (graphemeClusters) {
+            BreakIterator clusters = BreakIterator.getCharacterInstance();
+            clusters.setText(text);
+            int[] ends = new int[text.length()];
+            int count = 0;
+            for (int end = clusters.next(); end != BreakIterator.DONE; end = clusters.next()) {
+                ends[count++] = end;
+            }
+            return Arrays.copyOf(ends, count);
+        }
+        int[] ends = new int[text.codePointCount(0, text.length())];
+        for (int i = 0, unit = 0; i < text.length(); unit++) {
+            i += Character.charCount(text.codePointAt(i));
+            ends[unit] = i;
+        }
+        return ends;
+    }
+
+    /**
+     * Cache key for shared animations.
+     */
+    private static final class Key {
+        final String text;
+        final List<Color> stops;
+        final int frameCount;
+        final boolean graphemeClusters;
+        final ChatFormat[] formats;
+
+        Key(String text, List<Color> stops, int frameCount, boolean graphemeClusters, ChatFormat[] formats) {
+            this.text = text;
+            this.stops = stops;
+            this.frameCount = frameCount;
+            this.graphemeClusters = graphemeClusters;
+            this.formats = formats;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key other)) return false;
+            return frameCount == other.frameCount && graphemeClusters == other.graphemeClusters
+                    && text.equals(other.text) && stops.equals(other.stops) && Arrays.equals(formats, other.formats);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(text, stops, frameCount, graphemeClusters, Arrays.hashCode(formats));
+        }
+    }
+}
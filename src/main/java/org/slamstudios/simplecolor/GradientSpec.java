@@ -0,0 +1,91 @@
+package org.slamstudios.simplecolor;
+
+import org.slamstudios.simplecolor.enums.Interpolation;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A gradient laid over a run of visible characters.
+ *
+ * Segments only reference the gradient and their offset into it; the
+ * per-character colors are generated once, on first render.
+ *
+ * The gradient steps once per unit: a code point, or a grapheme cluster such
+ * as an emoji with modifiers. Every char of a unit gets the same color, so a
+ * surrogate pair is never split. Units are only recorded when the text is not
+ * plain ASCII; otherwise each char is its own unit.
+ */
+final class GradientSpec {
+
+    final List<Color> stops;
+    final Interpolation mode;
+    // Length in chars
+    final int length;
+    // Unit index of each char, or null when every char is its own unit
+    @Nullable private final int[] units;
+    private final int unitCount;
+
+    private volatile int[] colors;
+
+    GradientSpec(@Nonnull List<Color> stops, @Nonnull Interpolation mode, int length) {
+        this(stops, mode, length, null, length);
+    }
+
+    GradientSpec(@Nonnull List<Color> stops, @Nonnull Interpolation mode, int length, @Nullable int[] units,
+                 int unitCount) {
+        this.stops = stops;
+        this.mode = mode;
+        this.length = length;
+        this.units = units;
+        this.unitCount = unitCount;
+    }
+
+    /**
+     * Gets the packed RGB color for every character of the gradient.
+     */
+    @Nonnull
+    int[] colors() {
+        int[] result = colors;
+        if (result == null) {
+            // Benign race: concurrent callers compute identical arrays
+            result = GradientUtil.generatePacked(stops, unitCount, mode);
+            if (units != null) {
+                int[] perUnit = result;
+                result = new int[length];
+                for (int i = 0; i < length; i++) {
+                    result[i] = perUnit[units[i]];
+                }
+            }
+            colors = result;
+        }
+        return result;
+    }
+
+    /**
+     * Whether the char at offset starts a new unit, i.e. is not the tail of a surrogate pair or cluster.
+     */
+    boolean startsUnit(int offset) {
+        return units == null || offset == 0 || units[offset] != units[offset - 1];
+    }
+
+    /**
+     * Creates the same gradient laid over only the chars [from, to) of this one.
+     */
+    @Nonnull
+    GradientSpec slice(int from, int to) {
+        if (units == null) {
+            return new GradientSpec(stops, mode, to - from);
+        }
+        int[] sliced = Arrays.copyOfRange(units, from, to);
+        int base = sliced.length > 0 ? sliced[0] : 0;
+        for (int i = 0; i < sliced.length; i++) {
+            sliced[i] -= base;
+        }
+        int count = sliced.length > 0 ? sliced[sliced.length - 1] + 1 : 0;
+        return new GradientSpec(stops, mode, to - from, sliced, count);
+    }
+}
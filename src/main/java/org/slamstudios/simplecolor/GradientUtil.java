@@ -1,8 +1,11 @@
 package org.slamstudios.simplecolor;
 
+import org.slamstudios.simplecolor.enums.Interpolation;
+
 import javax.annotation.Nonnull;
 import java.awt.Color;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -12,6 +15,29 @@ public final class GradientUtil {
 
     private GradientUtil() {}
 
+    // Vector API path for linear gradients; below this many steps the scalar loop wins
+    private static final boolean VECTOR_ENABLED = detectVectorSupport();
+    private static final int VECTOR_MIN_STEPS = 32;
+
+    // sRGB channel (0-255) to linear light (0-1)
+    private static final float[] SRGB_TO_LINEAR = new float[256];
+
+    // Linear light quantized to LINEAR_STEPS levels back to an sRGB channel
+    private static final int LINEAR_STEPS = 4096;
+    private static final int[] LINEAR_TO_SRGB = new int[LINEAR_STEPS];
+
+    static {
+        for (int i = 0; i < SRGB_TO_LINEAR.length; i++) {
+            double c = i / 255.0;
+            SRGB_TO_LINEAR[i] = (float) (c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4));
+        }
+        for (int i = 0; i < LINEAR_STEPS; i++) {
+            double l = (double) i / (LINEAR_STEPS - 1);
+            double c = l <= 0.0031308 ? l * 12.92 : 1.055 * Math.pow(l, 1 / 2.4) - 0.055;
+            LINEAR_TO_SRGB[i] = clamp((int) Math.round(c * 255));
+        }
+    }
+
     /**
      * Generates a list of colors forming a gradient between start and end colors.
      *
@@ -49,6 +75,20 @@ public final class GradientUtil {
      */
     @Nonnull
     public static List<Color> generateMultiGradient(@Nonnull List<Color> colors, int steps) {
+        return generateMultiGradient(colors, steps, Interpolation.LINEAR);
+    }
+
+    /**
+     * Generates a multi-color gradient through multiple color stops,
+     * interpolating in the given color space.
+     *
+     * @param colors the color stops
+     * @param steps the total number of steps
+     * @param mode the interpolation mode
+     * @return list of colors for each step
+     */
+    @Nonnull
+    public static List<Color> generateMultiGradient(@Nonnull List<Color> colors, int steps, @Nonnull Interpolation mode) {
         if (colors.isEmpty()) {
             throw new IllegalArgumentException("At least one color is required");
         }
@@ -60,25 +100,122 @@ public final class GradientUtil {
             return result;
         }
 
-        List<Color> gradient = new ArrayList<>(steps);
+        int[] packed = generatePacked(colors, steps, mode);
+        List<Color> gradient = new ArrayList<>(packed.length);
+        for (int rgb : packed) {
+            gradient.add(new Color(rgb));
+        }
+        return gradient;
+    }
+
+    /**
+     * Generates a multi-color gradient as packed 0xRRGGBB values.
+     * Avoids one Color object per step, which matters for long texts and animation frames.
+     *
+     * @param colors the color stops
+     * @param steps the total number of steps
+     * @param mode the interpolation mode
+     * @return packed RGB value for each step
+     */
+    @Nonnull
+    public static int[] generatePacked(@Nonnull List<Color> colors, int steps, @Nonnull Interpolation mode) {
+        if (colors.isEmpty()) {
+            throw new IllegalArgumentException("At least one color is required");
+        }
+        int[] out = new int[Math.max(0, steps)];
+        if (colors.size() == 1) {
+            Arrays.fill(out, colors.getFirst().getRGB() & 0xFFFFFF);
+            return out;
+        }
+
         int segments = colors.size() - 1;
         float stepsPerSegment = (float) steps / segments;
 
+        if (mode == Interpolation.LINEAR) {
+            int[] stops = new int[colors.size()];
+            for (int i = 0; i < stops.length; i++) {
+                stops[i] = colors.get(i).getRGB() & 0xFFFFFF;
+            }
+            if (VECTOR_ENABLED && steps >= VECTOR_MIN_STEPS) {
+                VectorGradient.fill(stops, steps, out);
+            } else {
+                fillLinear(stops, steps, out);
+            }
+            return out;
+        }
+
+        // Convert each stop once; per step only the lerp and the cheap way back remain
+        float[][] stops = new float[colors.size()][];
+        for (int i = 0; i < stops.length; i++) {
+            stops[i] = toSpace(colors.get(i), mode);
+        }
+
         for (int i = 0; i < steps; i++) {
             float position = i / stepsPerSegment;
             int segmentIndex = Math.min((int) position, segments - 1);
             float segmentRatio = position - segmentIndex;
+            out[i] = lerpInSpace(stops[segmentIndex], stops[segmentIndex + 1], segmentRatio, mode);
+        }
 
-            Color startColor = colors.get(segmentIndex);
-            Color endColor = colors.get(segmentIndex + 1);
+        return out;
+    }
 
-            int red = Math.round(startColor.getRed() + segmentRatio * (endColor.getRed() - startColor.getRed()));
-            int green = Math.round(startColor.getGreen() + segmentRatio * (endColor.getGreen() - startColor.getGreen()));
-            int blue = Math.round(startColor.getBlue() + segmentRatio * (endColor.getBlue() - startColor.getBlue()));
-            gradient.add(new Color(clamp(red), clamp(green), clamp(blue)));
+    /**
+     * Fills packed 0xRRGGBB values for every step of a linear gradient over packed
+     * stops, one step at a time. {@link VectorGradient#fill} must match it exactly.
+     */
+    static void fillLinear(int[] stops, int steps, int[] out) {
+        int segments = stops.length - 1;
+        float stepsPerSegment = (float) steps / segments;
+        for (int i = 0; i < steps; i++) {
+            float position = i / stepsPerSegment;
+            int segmentIndex = Math.min((int) position, segments - 1);
+            float segmentRatio = position - segmentIndex;
+
+            int start = stops[segmentIndex];
+            int end = stops[segmentIndex + 1];
+            int startRed = (start >> 16) & 0xFF;
+            int startGreen = (start >> 8) & 0xFF;
+            int startBlue = start & 0xFF;
+
+            int red = Math.round(startRed + segmentRatio * (((end >> 16) & 0xFF) - startRed));
+            int green = Math.round(startGreen + segmentRatio * (((end >> 8) & 0xFF) - startGreen));
+            int blue = Math.round(startBlue + segmentRatio * ((end & 0xFF) - startBlue));
+            out[i] = pack(red, green, blue);
         }
+    }
 
-        return gradient;
+    /**
+     * Whether linear gradients are computed with the Vector API.
+     * True only when the JVM runs with --add-modules jdk.incubator.vector.
+     */
+    public static boolean isVectorized() {
+        return VECTOR_ENABLED;
+    }
+
+    /**
+     * Packs clamped channel values into 0xRRGGBB.
+     */
+    static int pack(int red, int green, int blue) {
+        return (clamp(red) << 16) | (clamp(green) << 8) | clamp(blue);
+    }
+
+    /**
+     * Checks whether the incubating Vector API module was enabled on this JVM.
+     * VectorGradient is only touched after this succeeds, so it never fails to link.
+     */
+    private static boolean detectVectorSupport() {
+        if (Boolean.getBoolean("simplecolor.vector.disabled")) {
+            return false;
+        }
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            return VectorGradient.isUsable();
+        } catch (LinkageError e) {
+            return false;
+        }
     }
 
     /**
@@ -104,4 +241,111 @@ public final class GradientUtil {
         int blue = Math.round(start.getBlue() + ratio * (end.getBlue() - start.getBlue()));
         return new Color(clamp(red), clamp(green), clamp(blue));
     }
+
+    /**
+     * Interpolates between two colors in the given color space.
+     *
+     * @param start the starting color
+     * @param end the ending color
+     * @param ratio the interpolation ratio (0.0 to 1.0)
+     * @param mode the interpolation mode
+     * @return the interpolated color
+     */
+    @Nonnull
+    public static Color interpolate(@Nonnull Color start, @Nonnull Color end, float ratio, @Nonnull Interpolation mode) {
+        if (mode == Interpolation.LINEAR) {
+            return interpolate(start, end, ratio);
+        }
+        ratio = Math.max(0, Math.min(1, ratio));
+        return new Color(lerpInSpace(toSpace(start, mode), toSpace(end, mode), ratio, mode));
+    }
+
+    /**
+     * Converts a color into the coordinates of the given interpolation space.
+     */
+    private static float[] toSpace(Color color, Interpolation mode) {
+        switch (mode) {
+            case GAMMA -> {
+                return new float[] {
+                        SRGB_TO_LINEAR[color.getRed()],
+                        SRGB_TO_LINEAR[color.getGreen()],
+                        SRGB_TO_LINEAR[color.getBlue()]
+                };
+            }
+            case OKLAB -> {
+                float r = SRGB_TO_LINEAR[color.getRed()];
+                float g = SRGB_TO_LINEAR[color.getGreen()];
+                float b = SRGB_TO_LINEAR[color.getBlue()];
+                float l = (float) Math.cbrt(0.4122214708f * r + 0.5363325363f * g + 0.0514459929f * b);
+                float m = (float) Math.cbrt(0.2119034982f * r + 0.6806995451f * g + 0.1073969566f * b);
+                float s = (float) Math.cbrt(0.0883024619f * r + 0.2817188376f * g + 0.6299787005f * b);
+                return new float[] {
+                        0.2104542553f * l + 0.7936177850f * m - 0.0040720468f * s,
+                        1.9779984951f * l - 2.4285922050f * m + 0.4505937099f * s,
+                        0.0259040371f * l + 0.7827717662f * m - 0.8086757660f * s
+                };
+            }
+            case HSV -> {
+                return Color.RGBtoHSB(color.getRed(), color.getGreen(), color.getBlue(), null);
+            }
+            default -> {
+                return new float[] {color.getRed(), color.getGreen(), color.getBlue()};
+            }
+        }
+    }
+
+    /**
+     * Interpolates two points in the given space and converts the result back to packed sRGB.
+     */
+    private static int lerpInSpace(float[] a, float[] b, float ratio, Interpolation mode) {
+        float c1 = a[1] + ratio * (b[1] - a[1]);
+        float c2 = a[2] + ratio * (b[2] - a[2]);
+        switch (mode) {
+            case GAMMA -> {
+                float c0 = a[0] + ratio * (b[0] - a[0]);
+                return (encode(c0) << 16) | (encode(c1) << 8) | encode(c2);
+            }
+            case OKLAB -> {
+                float lab = a[0] + ratio * (b[0] - a[0]);
+                float l = lab + 0.3963377774f * c1 + 0.2158037573f * c2;
+                float m = lab - 0.1055613458f * c1 - 0.0638541728f * c2;
+                float s = lab - 0.0894841775f * c1 - 1.2914855480f * c2;
+                l = l * l * l;
+                m = m * m * m;
+                s = s * s * s;
+                return (encode(4.0767416621f * l - 3.3077115913f * m + 0.2309699292f * s) << 16)
+                        | (encode(-1.2684380046f * l + 2.6097574011f * m - 0.3413193965f * s) << 8)
+                        | encode(-0.0041960863f * l - 0.7034186147f * m + 1.7076147010f * s);
+            }
+            case HSV -> {
+                // Take the short way around the hue wheel
+                float hueDelta = b[0] - a[0];
+                if (hueDelta > 0.5f) {
+                    hueDelta -= 1;
+                } else if (hueDelta < -0.5f) {
+                    hueDelta += 1;
+                }
+                float hue = a[0] + ratio * hueDelta;
+                hue -= (float) Math.floor(hue);
+                return Color.HSBtoRGB(hue, c1, c2) & 0xFFFFFF;
+            }
+            default -> {
+                float c0 = a[0] + ratio * (b[0] - a[0]);
+                return pack(Math.round(c0), Math.round(c1), Math.round(c2));
+            }
+        }
+    }
+
+    /**
+     * Converts linear light back to an sRGB channel through the lookup table.
+     */
+    private static int encode(float linear) {
+        if (linear <= 0) {
+            return LINEAR_TO_SRGB[0];
+        }
+        if (linear >= 1) {
+            return LINEAR_TO_SRGB[LINEAR_STEPS - 1];
+        }
+        return LINEAR_TO_SRGB[(int) (linear * (LINEAR_STEPS - 1) + 0.5f)];
+    }
 }
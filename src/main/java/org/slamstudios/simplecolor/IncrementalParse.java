@@ -0,0 +1,276 @@
+package org.slamstudios.simplecolor;
+
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import org.slamstudios.simplecolor.enums.GradientFit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * A parse that can be updated after an edit without re-parsing everything.
+ *
+ * While parsing, a checkpoint is taken wherever a new style starts: the
+ * input position, the output length and the style in effect. An edit
+ * re-parses from the last checkpoint before it whose earlier decisions
+ * did not look at the edited text, and stops as soon as it reaches a
+ * checkpoint of the old parse that has the same style. The output on
+ * either side is copied over, gradients included, so only the segments
+ * around the edit are rebuilt.
+ *
+ * Instances are immutable; {@link #edit} returns a new one. The result is
+ * identical to a full parse of the edited input. Placeholders are not
+ * expanded and no parse budget is charged.
+ *
+ * Example:
+ * <pre>
+ * IncrementalParse preview = ColorParser.parseIncremental("&amp;aHello", player);
+ * preview = preview.edit(7, 0, " &amp;lworld");
+ * sign.setPreview(preview.getResult().toMessage());
+ * </pre>
+ */
+public final class IncrementalParse {
+
+    private final String input;
+    @Nullable
+    private final Player player;
+    private final ParsedMessage result;
+
+    // Checkpoints, ordered by input position
+    private final int count;
+    private final int[] inputPositions;
+    private final int[] textPositions;
+    // Exclusive bound of the input examined before each checkpoint
+    private final int[] horizons;
+    private final int[] linkCounts;
+    private final SegmentWriter.Saved[] styles;
+
+    private IncrementalParse(String input, @Nullable Player player, ParsedMessage result, Tracer tracer) {
+        this.input = input;
+        this.player = player;
+        this.result = result;
+        this.count = tracer.count;
+        this.inputPositions = tracer.inputPositions;
+        this.textPositions = tracer.textPositions;
+        this.horizons = tracer.horizons;
+        this.linkCounts = tracer.linkCounts;
+        this.styles = tracer.styles;
+    }
+
+    /**
+     * Parses input, recording checkpoints for later edits.
+     *
+     * @param input the input string with color codes
+     * @param player the player to check permissions for (or null to skip checks)
+     */
+    @Nonnull
+    public static IncrementalParse of(@Nonnull String input, @Nullable Player player) {
+        SegmentBuffer segments = new SegmentBuffer(input.length());
+        SegmentWriter writer = new SegmentWriter(segments);
+        Tracer tracer = new Tracer(input, 0, 0, null, null);
+        tracer.mark(0, writer);
+        ColorParser.scan(input, 0, writer, player, null, tracer);
+        writer.flush();
+        return new IncrementalParse(input, player, segments.build(), tracer);
+    }
+
+    /**
+     * Applies an edit and re-parses only what it affects.
+     *
+     * @param offset where the edit starts in the current input
+     * @param removed how many characters are removed at offset
+     * @param inserted the text inserted at offset
+     * @return the parse of the edited input
+     */
+    @Nonnull
+    public IncrementalParse edit(int offset, int removed, @Nonnull String inserted) {
+        if (offset < 0 || removed < 0 || offset + removed > input.length()) {
+            throw new IndexOutOfBoundsException("Edit " + offset + "+" + removed + " outside input of length "
+                    + input.length());
+        }
+        String edited = input.substring(0, offset) + inserted + input.substring(offset + removed);
+
+        // Resume from the last checkpoint whose decisions did not look at the edit
+        int resume = 0;
+        for (int c = count - 1; c > 0; c--) {
+            if (inputPositions[c] <= offset && horizons[c] <= offset) {
+                resume = c;
+                break;
+            }
+        }
+
+        SegmentBuffer segments = new SegmentBuffer(edited.length());
+        TextLayout.slice(result, 0, textPositions[resume], GradientFit.CLIP, segments);
+        SegmentWriter writer = new SegmentWriter(segments);
+        writer.restore(styles[resume]);
+        writer.addLinkCount(linkCounts[resume]);
+
+        Splice splice = new Splice(this, offset + inserted.length(), inserted.length() - removed, offset + removed);
+        Tracer tracer = new Tracer(edited, resume, textPositions[resume], this, splice);
+        tracer.horizon = horizons[resume];
+        if (tracer.mark(inputPositions[resume], writer)) {
+            ColorParser.scan(edited, inputPositions[resume], writer, player, null, tracer);
+        }
+        writer.flush();
+
+        if (splice.checkpoint >= 0) {
+            // Same style at the same place in the unchanged tail: copy the old output from there on
+            int from = textPositions[splice.checkpoint];
+            TextLayout.slice(result, from, result.text.length(), GradientFit.CLIP, segments);
+            tracer.appendShifted(this, splice.checkpoint, splice.shift, splice.textPosition - from);
+        }
+        return new IncrementalParse(edited, player, segments.build(), tracer);
+    }
+
+    /**
+     * Gets the parsed message.
+     */
+    @Nonnull
+    public ParsedMessage getResult() {
+        return result;
+    }
+
+    /**
+     * Gets the input this is a parse of.
+     */
+    @Nonnull
+    public String getInput() {
+        return input;
+    }
+
+    /**
+     * Where an edited scan may rejoin the old parse.
+     */
+    private static final class Splice {
+        final IncrementalParse previous;
+        // First position in the edited input after the inserted text
+        final int editEnd;
+        final int shift;
+        // First position in the old input after the removed text
+        final int oldEditEnd;
+        int checkpoint = -1;
+        // Output length in the edited parse where it rejoins
+        int textPosition;
+
+        Splice(IncrementalParse previous, int editEnd, int shift, int oldEditEnd) {
+            this.previous = previous;
+            this.editEnd = editEnd;
+            this.shift = shift;
+            this.oldEditEnd = oldEditEnd;
+        }
+
+        /**
+         * Finds an old checkpoint at the same place with the same style, or -1.
+         */
+        int find(int position, SegmentWriter.Saved style, int links) {
+            int old = position - shift;
+            if (position < editEnd || old < oldEditEnd) {
+                return -1;
+            }
+            int c = Arrays.binarySearch(previous.inputPositions, 0, previous.count, old);
+            if (c < 0 || previous.linkCounts[c] != links || !previous.styles[c].sameStyle(style)) {
+                return -1;
+            }
+            return c;
+        }
+    }
+
+    /**
+     * Records checkpoints while the parser scans, and stops the scan at a splice point.
+     */
+    static final class Tracer {
+        private final String input;
+        private final Splice splice;
+        // Output written before the scanning writer started
+        final int textBase;
+
+        int count;
+        int[] inputPositions;
+        int[] textPositions;
+        int[] horizons;
+        int[] linkCounts;
+        SegmentWriter.Saved[] styles;
+
+        int horizon;
+        // Codes before this position are already folded into horizon
+        private int scanned;
+
+        Tracer(String input, int keep, int textBase, @Nullable IncrementalParse previous, @Nullable Splice splice) {
+            this.input = input;
+            this.splice = splice;
+            this.textBase = textBase;
+            int capacity = Math.max(8, keep * 2);
+            inputPositions = new int[capacity];
+            textPositions = new int[capacity];
+            horizons = new int[capacity];
+            linkCounts = new int[capacity];
+            styles = new SegmentWriter.Saved[capacity];
+            if (previous != null) {
+                // Checkpoints before the resume point still hold
+                System.arraycopy(previous.inputPositions, 0, inputPositions, 0, keep);
+                System.arraycopy(previous.textPositions, 0, textPositions, 0, keep);
+                System.arraycopy(previous.horizons, 0, horizons, 0, keep);
+                System.arraycopy(previous.linkCounts, 0, linkCounts, 0, keep);
+                System.arraycopy(previous.styles, 0, styles, 0, keep);
+                count = keep;
+                scanned = previous.inputPositions[keep];
+            }
+        }
+
+        /**
+         * Called by the parser before each character it examines.
+         *
+         * @return false to stop the scan here
+         */
+        boolean mark(int position, SegmentWriter writer) {
+            if (!writer.isSettled() || (count > 0 && inputPositions[count - 1] == position)) {
+                return true;
+            }
+            for (; scanned < position; scanned++) {
+                char c = input.charAt(scanned);
+                if (c == '&' || c == '§') {
+                    horizon = Math.max(horizon, ColorParser.lookahead(input, scanned));
+                }
+            }
+            SegmentWriter.Saved style = writer.save();
+            if (splice != null) {
+                int old = splice.find(position, style, writer.getLinkCount());
+                if (old >= 0) {
+                    splice.checkpoint = old;
+                    splice.textPosition = textBase + writer.length();
+                    return false;
+                }
+            }
+            add(position, textBase + writer.length(), horizon, writer.getLinkCount(), style);
+            return true;
+        }
+
+        /**
+         * Copies the old checkpoints from index on, moved to where their text now is.
+         */
+        void appendShifted(IncrementalParse previous, int index, int inputShift, int textShift) {
+            for (int c = index; c < previous.count; c++) {
+                int shiftedHorizon = Math.max(horizon, previous.horizons[c] + inputShift);
+                add(previous.inputPositions[c] + inputShift, previous.textPositions[c] + textShift, shiftedHorizon,
+                        previous.linkCounts[c], previous.styles[c]);
+            }
+        }
+
+        private void add(int position, int text, int examined, int links, SegmentWriter.Saved style) {
+            if (count == inputPositions.length) {
+                int capacity = count * 2;
+                inputPositions = Arrays.copyOf(inputPositions, capacity);
+                textPositions = Arrays.copyOf(textPositions, capacity);
+                horizons = Arrays.copyOf(horizons, capacity);
+                linkCounts = Arrays.copyOf(linkCounts, capacity);
+                styles = Arrays.copyOf(styles, capacity);
+            }
+            inputPositions[count] = position;
+            textPositions[count] = text;
+            horizons[count] = examined;
+            linkCounts[count] = links;
+            styles[count] = style;
+            count++;
+        }
+    }
+}
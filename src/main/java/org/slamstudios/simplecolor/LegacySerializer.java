@@ -0,0 +1,410 @@
+package org.slamstudios.simplecolor;
+
+import org.slamstudios.simplecolor.enums.ChatColor;
+import org.slamstudios.simplecolor.enums.ChatFormat;
+import org.slamstudios.simplecolor.enums.Interpolation;
+
+import javax.annotation.Nonnull;
+import java.awt.Color;
+import java.util.List;
+
+/**
+ * Writes parsed messages back out as &amp;-coded strings.
+ *
+ * Only codes that change the current state are written, legacy codes are
+ * preferred over hex when they produce the same color, and gradients are
+ * written as their &amp;#a:b spec instead of one color per character.
+ * Text that itself looks like a color code, e.g. a literal "&amp;4", is kept
+ * as text by writing a code that changes nothing between the &amp; and the
+ * code character.
+ */
+final class LegacySerializer {
+
+    private LegacySerializer() {}
+
+    private static final char CODE = '&';
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final ChatColor[] LEGACY = ChatColor.values();
+
+    // Shortest run of single-character solid segments worth testing for a hidden gradient
+    private static final int MIN_GRADIENT_RUN = 3;
+
+    /**
+     * Appends the coded form of a message to out.
+     */
+    @Nonnull
+    static StringBuilder serialize(@Nonnull ParsedMessage message, @Nonnull StringBuilder out) {
+        State state = new State(out);
+        String text = message.text;
+
+        int i = 0;
+        while (i < message.size) {
+            int start = message.start(i);
+            int end = message.ends[i];
+            int style = message.styles[i];
+            String link = message.linkAt(i);
+            GradientSpec gradient = message.gradientAt(i);
+
+            // A whole gradient, possibly spanning format changes and links: one code, then formats as they are added
+            int spanned = gradient != null ? gradientRun(message, i, gradient) : 0;
+            if (spanned > 0 && bareCodeBeforeFormats(message, i, spanned)) {
+                spanned = 0;
+            }
+            if (spanned > 0) {
+                state.gradient(gradient, style, text, start);
+                for (int j = i; j < i + spanned; j++) {
+                    state.addFormats(message.styles[j]);
+                    String segmentLink = message.linkAt(j);
+                    if (segmentLink != null) {
+                        out.append(CODE).append('(').append(segmentLink).append(")[")
+                                .append(text, message.start(j), message.ends[j]).append(']');
+                    } else {
+                        state.text(text, message.start(j), message.ends[j]);
+                    }
+                }
+                i += spanned;
+                continue;
+            }
+
+            if (link != null) {
+                int color = gradient != null ? gradient.colors()[message.gradientOffset[i]] : message.colors[i];
+                state.solid(color, style);
+                out.append(CODE).append('(').append(link).append(")[").append(text, start, end).append(']');
+                i++;
+                continue;
+            }
+
+            if (gradient != null) {
+                // Only part of the gradient survived (e.g. truncated), or a format was dropped
+                // partway, which &r would end it at: spell out each color
+                int[] colors = gradient.colors();
+                int offset = message.gradientOffset[i] - start;
+                for (int j = start; j < end; j++) {
+                    state.solid(colors[offset + j], style, text, j);
+                    state.text(text, j, j + 1);
+                }
+                i++;
+                continue;
+            }
+
+            // A run of one-character solid segments may be a gradient built by hand
+            int run = singleCharRun(message, i);
+            if (run >= MIN_GRADIENT_RUN && matchesLinearGradient(message, i, run)
+                    && (style != 0 || !hasBareCode(text, start, message.ends[i + run - 1]))) {
+                int first = message.colors[i];
+                int last = message.colors[i + run - 1];
+                state.gradient(first, last, style, text, start);
+                state.text(text, start, message.ends[i + run - 1]);
+                i += run;
+                continue;
+            }
+
+            state.solid(message.colors[i], style, text, start);
+            state.text(text, start, end);
+            i++;
+        }
+        return out;
+    }
+
+    /**
+     * Counts the segments a gradient code written at index would reproduce: the
+     * whole gradient, from its start, in consecutive segments that only ever add
+     * formats. 0 if there are none.
+     */
+    private static int gradientRun(ParsedMessage message, int index, GradientSpec gradient) {
+        int covered = 0;
+        int style = message.styles[index];
+        for (int i = index; i < message.size; i++) {
+            if (message.gradientAt(i) != gradient || message.gradientOffset[i] != covered
+                    || (message.styles[i] & style) != style) {
+                return 0;
+            }
+            style = message.styles[i];
+            covered += message.ends[i] - message.start(i);
+            if (covered == gradient.length) {
+                return i - index + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Whether the unformatted start of a gradient run has text that reads as a
+     * code. Only a format code can separate it without ending the gradient, so
+     * such a gradient is spelled out instead.
+     */
+    private static boolean bareCodeBeforeFormats(ParsedMessage message, int index, int spanned) {
+        int end = message.start(index);
+        for (int i = index; i < index + spanned && message.styles[i] == 0; i++) {
+            end = message.ends[i];
+        }
+        return hasBareCode(message.text, message.start(index), end);
+    }
+
+    /**
+     * Whether text between from and to has an &amp; or § the parser would read as the start of a code.
+     */
+    private static boolean hasBareCode(String text, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            if (startsCode(text.charAt(i - 1), text.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether c followed by next may be read as a code. Links and gradients are
+     * counted even when the rest would not parse; escaping them costs nothing.
+     */
+    private static boolean startsCode(char c, char next) {
+        if (c != '&' && c != '§') {
+            return false;
+        }
+        return next == '(' || next == '*' || next == '#'
+                || ChatColor.getByCode(next) != null || ChatFormat.getByCode(next) != null;
+    }
+
+    /**
+     * Counts consecutive one-character colored segments with the same style and no link, starting at index.
+     */
+    private static int singleCharRun(ParsedMessage message, int index) {
+        int style = message.styles[index];
+        int count = 0;
+        for (int i = index; i < message.size; i++) {
+            if (message.ends[i] - message.start(i) != 1 || message.colors[i] == ParsedMessage.NO_COLOR
+                    || message.styles[i] != style || message.linkAt(i) != null || message.gradientAt(i) != null) {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Whether a two-stop linear gradient reproduces the colors of the run exactly.
+     */
+    private static boolean matchesLinearGradient(ParsedMessage message, int index, int run) {
+        List<Color> stops = List.of(new Color(message.colors[index]), new Color(message.colors[index + run - 1]));
+        int[] expected = GradientUtil.generatePacked(stops, run, Interpolation.LINEAR);
+        for (int j = 0; j < run; j++) {
+            if (expected[j] != message.colors[index + j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The color and formats already in effect on the output, so unchanged codes can be skipped.
+     */
+    private static final class State {
+        private final StringBuilder out;
+        private int color = ParsedMessage.NO_COLOR;
+        private int style;
+        // True while a gradient is active; any following text would continue it
+        private boolean inGradient;
+        // The color of a gradient with both stops the same, which a solid color can stand in for
+        private int uniformGradient = ParsedMessage.NO_COLOR;
+
+        State(StringBuilder out) {
+            this.out = out;
+        }
+
+        void solid(int rgb, int targetStyle) {
+            if (needsReset(rgb == ParsedMessage.NO_COLOR, targetStyle)) {
+                reset();
+            }
+            if (rgb != ParsedMessage.NO_COLOR && (rgb != color || inGradient)) {
+                writeColor(rgb);
+                color = rgb;
+                inGradient = false;
+            }
+            addFormats(targetStyle);
+        }
+
+        /**
+         * Like {@link #solid(int, int)}, for a color written right before the text at
+         * textStart. "&amp;#rrggbb:" is never a hex color, so when the text starts
+         * with ':' and no format code comes between, the color is written as a
+         * one-color gradient, which can be closed with @linear.
+         */
+        void solid(int rgb, int targetStyle, String text, int textStart) {
+            boolean written = rgb != ParsedMessage.NO_COLOR && (rgb != color || inGradient);
+            if (written && legacyFor(rgb) == null && textStart < text.length() && text.charAt(textStart) == ':') {
+                int kept = needsReset(false, targetStyle) ? 0 : style;
+                if ((targetStyle & ~kept) == 0) {
+                    gradient(rgb, rgb, targetStyle, text, textStart);
+                    return;
+                }
+            }
+            solid(rgb, targetStyle);
+        }
+
+        void gradient(GradientSpec gradient, int targetStyle, String text, int textStart) {
+            if (needsReset(false, targetStyle)) {
+                reset();
+            }
+            if (gradient.stops == ColorParser.RAINBOW_COLORS && gradient.mode == Interpolation.LINEAR) {
+                out.append(CODE).append('*');
+            } else {
+                out.append(CODE).append('#');
+                List<Color> stops = gradient.stops;
+                for (int i = 0; i < stops.size(); i++) {
+                    if (i > 0) out.append(':');
+                    writeStop(stops.get(i).getRGB() & 0xFFFFFF, i == stops.size() - 1);
+                }
+                writeMode(gradient.mode, text, textStart);
+            }
+            color = ParsedMessage.NO_COLOR;
+            inGradient = true;
+            uniformGradient = ParsedMessage.NO_COLOR;
+            addFormats(targetStyle);
+        }
+
+        void gradient(int first, int last, int targetStyle, String text, int textStart) {
+            if (needsReset(false, targetStyle)) {
+                reset();
+            }
+            out.append(CODE).append('#');
+            writeStop(first, false);
+            out.append(':');
+            writeStop(last, true);
+            writeMode(Interpolation.LINEAR, text, textStart);
+            color = ParsedMessage.NO_COLOR;
+            inGradient = true;
+            uniformGradient = first == last ? first : ParsedMessage.NO_COLOR;
+            addFormats(targetStyle);
+        }
+
+        /**
+         * Writes literal text. An &amp; or § that would read as a code together with
+         * the next character, even one from earlier text, gets a code between them
+         * that keeps the current color and formats.
+         */
+        void text(String text, int from, int to) {
+            for (int i = from; i < to; i++) {
+                char c = text.charAt(i);
+                if (!out.isEmpty() && startsCode(out.charAt(out.length() - 1), c)) {
+                    writeNoOp();
+                }
+                out.append(c);
+            }
+        }
+
+        /**
+         * Writes a code that leaves what is in effect unchanged: a format already on,
+         * the current color again, or &amp;r when nothing is set. Codes never end in
+         * &amp; or §, so a trailing one on the output is always text. A gradient with
+         * no format has no such code; the caller spells those out instead.
+         */
+        private void writeNoOp() {
+            if ((style & ParsedMessage.BOLD) != 0) {
+                out.append(CODE).append(ChatFormat.BOLD.getCode());
+            } else if ((style & ParsedMessage.ITALIC) != 0) {
+                out.append(CODE).append(ChatFormat.ITALIC.getCode());
+            } else if ((style & ParsedMessage.UNDERLINE) != 0) {
+                out.append(CODE).append(ChatFormat.UNDERLINE.getCode());
+            } else if ((style & ParsedMessage.MONOSPACE) != 0) {
+                out.append(CODE).append(ChatFormat.MONOSPACE.getCode());
+            } else if (inGradient) {
+                if (uniformGradient != ParsedMessage.NO_COLOR) {
+                    writeColor(uniformGradient);
+                    color = uniformGradient;
+                    inGradient = false;
+                }
+            } else if (color != ParsedMessage.NO_COLOR) {
+                writeColor(color);
+            } else {
+                reset();
+            }
+        }
+
+        /**
+         * Formats can only be turned off by &r, which also clears the color.
+         */
+        private boolean needsReset(boolean uncolored, int targetStyle) {
+            boolean dropsFormat = (style & ~targetStyle) != 0;
+            boolean dropsColor = uncolored && (color != ParsedMessage.NO_COLOR || inGradient);
+            return dropsFormat || dropsColor;
+        }
+
+        private void reset() {
+            out.append(CODE).append(ChatFormat.RESET.getCode());
+            color = ParsedMessage.NO_COLOR;
+            style = 0;
+            inGradient = false;
+        }
+
+        private void addFormats(int targetStyle) {
+            int added = targetStyle & ~style;
+            if ((added & ParsedMessage.BOLD) != 0) out.append(CODE).append(ChatFormat.BOLD.getCode());
+            if ((added & ParsedMessage.ITALIC) != 0) out.append(CODE).append(ChatFormat.ITALIC.getCode());
+            if ((added & ParsedMessage.UNDERLINE) != 0) out.append(CODE).append(ChatFormat.UNDERLINE.getCode());
+            if ((added & ParsedMessage.MONOSPACE) != 0) out.append(CODE).append(ChatFormat.MONOSPACE.getCode());
+            style = targetStyle;
+        }
+
+        private void writeColor(int rgb) {
+            ChatColor legacy = legacyFor(rgb);
+            if (legacy != null) {
+                out.append(CODE).append(legacy.getCode());
+            } else {
+                out.append(CODE).append('#');
+                writeHex(rgb);
+            }
+        }
+
+        /**
+         * Writes a gradient stop as a legacy name when that is shorter. The last stop
+         * is always hex, since a name would run into following letters.
+         */
+        private void writeStop(int rgb, boolean last) {
+            ChatColor legacy = last ? null : legacyFor(rgb);
+            if (legacy != null && legacy.getName().length() < 6) {
+                out.append(legacy.getName());
+            } else {
+                writeHex(rgb);
+            }
+        }
+
+        /**
+         * Writes the @mode suffix when needed, including an explicit @linear if the
+         * text itself starts with something the parser would read as a mode or as
+         * another stop.
+         */
+        private void writeMode(Interpolation mode, String text, int textStart) {
+            if (mode != Interpolation.LINEAR) {
+                out.append(mode);
+                return;
+            }
+            if (textStart < text.length() && text.charAt(textStart) == ':') {
+                out.append(Interpolation.LINEAR);
+                return;
+            }
+            if (textStart < text.length() && text.charAt(textStart) == '@') {
+                for (Interpolation candidate : Interpolation.values()) {
+                    if (text.regionMatches(true, textStart + 1, candidate.getName(), 0, candidate.getName().length())) {
+                        out.append(Interpolation.LINEAR);
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void writeHex(int rgb) {
+            for (int shift = 20; shift >= 0; shift -= 4) {
+                out.append(HEX[(rgb >> shift) & 0xF]);
+            }
+        }
+
+        private static ChatColor legacyFor(int rgb) {
+            for (ChatColor legacy : LEGACY) {
+                if ((legacy.getColor().getRGB() & 0xFFFFFF) == rgb) {
+                    return legacy;
+                }
+            }
+            return null;
+        }
+    }
+}
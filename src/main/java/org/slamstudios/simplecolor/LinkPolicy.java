@@ -0,0 +1,143 @@
+package org.slamstudios.simplecolor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Validates and normalizes link URLs found by the parser.
+ *
+ * Only http and https links are accepted; a URL without a scheme gets
+ * https. The host is checked against the allow and deny lists from the
+ * config, where an entry also covers its subdomains. The verdict for each
+ * host is cached, so repeated links to the same site cost one map lookup.
+ *
+ * Both lists and the cache form one immutable policy that configure
+ * replaces as a whole, so a check sees the old lists or the new ones,
+ * never a mix, and a verdict reached under old lists never lands in the
+ * new policy's cache.
+ */
+final class LinkPolicy {
+
+    private static final int MAX_CACHED_HOSTS = 1024;
+
+    private static volatile LinkPolicy current = new LinkPolicy(List.of(), List.of());
+
+    private final List<String> allowList;
+    private final List<String> denyList;
+    private final Map<String, Boolean> hosts = new ConcurrentHashMap<>();
+
+    private LinkPolicy(List<String> allowList, List<String> denyList) {
+        this.allowList = allowList;
+        this.denyList = denyList;
+    }
+
+    /**
+     * Replaces the allow and deny lists. An empty allow list allows every host not denied.
+     */
+    static void configure(@Nonnull List<String> allow, @Nonnull List<String> deny) {
+        current = new LinkPolicy(normalizeHosts(allow), normalizeHosts(deny));
+    }
+
+    /**
+     * Checks a URL from a message.
+     *
+     * @return the normalized URL, or null if it is malformed or its host is not allowed
+     */
+    @Nullable
+    static String check(@Nonnull String url) {
+        int schemeEnd = url.indexOf("://");
+        String scheme;
+        int hostStart;
+        if (schemeEnd < 0) {
+            scheme = "https";
+            hostStart = 0;
+        } else {
+            scheme = url.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+            if (!scheme.equals("http") && !scheme.equals("https")) {
+                return null;
+            }
+            hostStart = schemeEnd + 3;
+        }
+
+        // The authority ends at the path, query or fragment
+        int hostEnd = hostStart;
+        int portStart = -1;
+        while (hostEnd < url.length()) {
+            char c = url.charAt(hostEnd);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            if (c == ':' && portStart < 0) {
+                portStart = hostEnd;
+            } else if (portStart >= 0 ? !isDigit(c) : !isHostChar(c)) {
+                // Userinfo, whitespace and other surprises are rejected outright
+                return null;
+            }
+            hostEnd++;
+        }
+        int nameEnd = portStart >= 0 ? portStart : hostEnd;
+        if (nameEnd == hostStart || (portStart >= 0 && portStart + 1 == hostEnd)) {
+            return null;
+        }
+        for (int i = hostEnd; i < url.length(); i++) {
+            if (url.charAt(i) <= ' ') {
+                return null;
+            }
+        }
+
+        // "evil.com." is the same host as "evil.com"; one trailing dot is dropped so it cannot dodge the lists
+        int hostNameEnd = url.charAt(nameEnd - 1) == '.' ? nameEnd - 1 : nameEnd;
+        if (hostNameEnd == hostStart || url.charAt(hostNameEnd - 1) == '.') {
+            return null;
+        }
+        String host = url.substring(hostStart, hostNameEnd).toLowerCase(Locale.ROOT);
+        if (!current.allows(host)) {
+            return null;
+        }
+        return scheme + "://" + host + url.substring(nameEnd);
+    }
+
+    /**
+     * Checks a normalized host against this policy's lists, caching the verdict.
+     */
+    private boolean allows(String host) {
+        Boolean allowed = hosts.get(host);
+        if (allowed == null) {
+            if (hosts.size() >= MAX_CACHED_HOSTS) {
+                hosts.clear();
+            }
+            allowed = !matchesAny(host, denyList) && (allowList.isEmpty() || matchesAny(host, allowList));
+            hosts.put(host, allowed);
+        }
+        return allowed;
+    }
+
+    private static boolean matchesAny(String host, List<String> entries) {
+        for (String entry : entries) {
+            if (host.equals(entry) || host.endsWith(entry) && host.charAt(host.length() - entry.length() - 1) == '.') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> normalizeHosts(List<String> hosts) {
+        return hosts.stream()
+                .filter(host -> host != null && !host.isBlank())
+                .map(host -> host.trim().toLowerCase(Locale.ROOT))
+                .map(host -> host.endsWith(".") ? host.substring(0, host.length() - 1) : host)
+                .toList();
+    }
+
+    private static boolean isHostChar(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || isDigit(c) || c == '.' || c == '-';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
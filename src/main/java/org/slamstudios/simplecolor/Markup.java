@@ -0,0 +1,461 @@
+package org.slamstudios.simplecolor;
+
+import com.hypixel.hytale.server.core.Message;
+import org.slamstudios.simplecolor.enums.Interpolation;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Scoped tag markup, compiled once and rendered through the segment pipeline.
+ *
+ * Tags apply to the text between the opening and closing tag and nest freely;
+ * closing a tag restores the style from before it. A gradient covers all text
+ * inside its tag, nested formats included.
+ * <pre>
+ * &lt;gradient:red:blue&gt;Welcome &lt;bold&gt;home&lt;/bold&gt;!&lt;/gradient&gt;
+ * &lt;gold&gt;Gold &lt;#55ff55&gt;green&lt;/#55ff55&gt; gold again&lt;/gold&gt;
+ * &lt;link:https://example.com&gt;&lt;u&gt;docs&lt;/u&gt;&lt;/link&gt;
+ * </pre>
+ *
+ * Tags: bold (b), italic (i, em), underline (u), monospace (mono),
+ * color:name (c:name), any color name or #RRGGBB, gradient:c1:c2[:...][:mode],
+ * rainbow, link:url. Links pass the same host checks and per-message limit
+ * as &amp;(url)[text]; a rejected link leaves its text plain. A closing tag
+ * closes the innermost open tag of its kind, along with anything opened
+ * inside it; tags left open close at the end.
+ * Unknown tags and &amp; codes are kept as text. {key} placeholders are filled
+ * in at render time. A backslash escapes the next &lt;, { or backslash.
+ *
+ * The compiled tree lives in flat arrays in pre-order. Each tag node
+ * records where its subtree ends, so rendering is a single loop with a
+ * small stack and no node objects.
+ */
+public final class Markup {
+
+    // Shared instances so repeated sources compile once
+    private static final int MAX_SHARED = 256;
+    private static final Map<String, Markup> SHARED = new ConcurrentHashMap<>();
+
+    // Node kinds
+    private static final byte TEXT = 0;
+    private static final byte PLACEHOLDER = 1;
+    private static final byte STYLE = 2;
+    private static final byte COLOR = 3;
+    private static final byte GRADIENT = 4;
+    private static final byte RAINBOW = 5;
+    private static final byte LINK = 6;
+
+    private final String source;
+
+    // Node arena: kind, source range (text or placeholder key), value, and subtree end for tags
+    private final int count;
+    private final byte[] kinds;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] values;
+    private final int[] subtreeEnds;
+    // Gradient stops and modes, link URLs; tag nodes reference them by index
+    private final Object[] constants;
+
+    // Deepest tag nesting, sizes the render stack
+    private final int depth;
+    private final boolean hasPlaceholders;
+    private volatile ParsedMessage rendered;
+
+    private Markup(@Nonnull String source) {
+        Compiler compiler = new Compiler(source);
+        compiler.run();
+        this.source = source;
+        this.count = compiler.count;
+        this.kinds = compiler.kinds;
+        this.starts = compiler.starts;
+        this.ends = compiler.ends;
+        this.values = compiler.values;
+        this.subtreeEnds = compiler.subtreeEnds;
+        this.constants = compiler.constants.toArray();
+        this.depth = compiler.depth;
+        this.hasPlaceholders = compiler.hasPlaceholders;
+    }
+
+    /**
+     * Compiles markup.
+     */
+    @Nonnull
+    public static Markup compile(@Nonnull String source) {
+        return new Markup(source);
+    }
+
+    /**
+     * Gets a shared compiled instance for the source, compiling it on first use.
+     */
+    @Nonnull
+    public static Markup shared(@Nonnull String source) {
+        Markup markup = SHARED.get(source);
+        if (markup != null) {
+            return markup;
+        }
+        if (SHARED.size() >= MAX_SHARED) {
+            SHARED.clear();
+        }
+        return SHARED.computeIfAbsent(source, Markup::new);
+    }
+
+    /**
+     * Renders without placeholder values; {key} stays as written. Cached after the first call.
+     */
+    @Nonnull
+    public ParsedMessage render() {
+        ParsedMessage result = rendered;
+        if (result == null) {
+            result = render(null);
+            rendered = result;
+        }
+        return result;
+    }
+
+    /**
+     * Renders with placeholder values. Untrusted values are inserted as plain text;
+     * trusted values are parsed for &amp; codes, which apply only within the value.
+     */
+    @Nonnull
+    public ParsedMessage render(@Nullable PlaceholderContext context) {
+        if (context == null && rendered != null) {
+            return rendered;
+        }
+        SegmentBuffer segments = new SegmentBuffer(source.length());
+        SegmentWriter writer = new SegmentWriter(segments);
+
+        int[] closeAt = new int[depth];
+        SegmentWriter.Saved[] saved = new SegmentWriter.Saved[depth];
+        int open = 0;
+        for (int i = 0; i < count; i++) {
+            while (open > 0 && closeAt[open - 1] == i) {
+                writer.restore(saved[--open]);
+            }
+            switch (kinds[i]) {
+                case TEXT -> writer.append(source, starts[i], ends[i]);
+                case PLACEHOLDER -> appendPlaceholder(writer, context, i);
+                default -> {
+                    saved[open] = writer.save();
+                    closeAt[open++] = subtreeEnds[i];
+                    apply(writer, i);
+                }
+            }
+        }
+        writer.flush();
+        return segments.build();
+    }
+
+    /**
+     * Renders without placeholder values and builds the Message.
+     */
+    @Nonnull
+    public Message toMessage() {
+        return render().toMessage();
+    }
+
+    /**
+     * Whether the markup contains {key} placeholders.
+     */
+    public boolean hasPlaceholders() {
+        return hasPlaceholders;
+    }
+
+    /**
+     * Gets the markup source.
+     */
+    @Nonnull
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private void apply(SegmentWriter writer, int node) {
+        int value = values[node];
+        switch (kinds[node]) {
+            case STYLE -> writer.addStyle(value);
+            case COLOR -> writer.color(value);
+            case RAINBOW -> writer.rainbow();
+            case LINK -> {
+                // Same rules as &(url)[text]: a disallowed link or one over the limit leaves plain text
+                String url = ColorParser.withinLinkLimit(writer) ? LinkPolicy.check((String) constants[value]) : null;
+                if (url != null) {
+                    writer.link(url);
+                }
+            }
+            case GRADIENT -> {
+                @SuppressWarnings("unchecked")
+                List<Color> stops = (List<Color>) constants[value];
+                writer.gradient(stops, (Interpolation) constants[value + 1]);
+            }
+            default -> throw new IllegalStateException("Not a tag node: " + kinds[node]);
+        }
+    }
+
+    private void appendPlaceholder(SegmentWriter writer, @Nullable PlaceholderContext context, int node) {
+        PlaceholderContext.Resolved resolved = context != null
+                ? context.resolve(source.substring(starts[node], ends[node])) : null;
+        if (resolved == null) {
+            // Unknown keys stay as written, braces included
+            writer.append(source, starts[node] - 1, ends[node] + 1);
+        } else if (resolved.trusted) {
+            SegmentWriter.Saved before = writer.save();
+            ColorParser.scan(resolved.value, writer, null, null);
+            writer.restore(before);
+        } else {
+            writer.append(resolved.value, 0, resolved.value.length());
+        }
+    }
+
+    /**
+     * Parses markup into the node arrays.
+     */
+    private static final class Compiler {
+        private final String source;
+        private int count;
+        private byte[] kinds = new byte[16];
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int[] values = new int[16];
+        private int[] subtreeEnds = new int[16];
+        private final List<Object> constants = new ArrayList<>();
+        private int depth;
+        private boolean hasPlaceholders;
+
+        Compiler(String source) {
+            this.source = source;
+        }
+
+        void run() {
+            // Open tag nodes, innermost last
+            int[] openNodes = new int[8];
+            int open = 0;
+
+            int length = source.length();
+            int textStart = 0;
+            int i = 0;
+            while (i < length) {
+                char c = source.charAt(i);
+
+                // Escape: the next character starts the following text
+                if (c == '\\' && i + 1 < length) {
+                    char next = source.charAt(i + 1);
+                    if (next == '<' || next == '{' || next == '\\') {
+                        addText(textStart, i);
+                        textStart = i + 1;
+                        i += 2;
+                        continue;
+                    }
+                }
+
+                if (c == '{') {
+                    int end = placeholderEnd(i);
+                    if (end > 0) {
+                        addText(textStart, i);
+                        addNode(PLACEHOLDER, i + 1, end, 0);
+                        hasPlaceholders = true;
+                        i = textStart = end + 1;
+                        continue;
+                    }
+                }
+
+                if (c == '<') {
+                    int end = source.indexOf('>', i + 1);
+                    if (end > 0 && source.charAt(i + 1) == '/') {
+                        int match = findOpen(openNodes, open, i + 2, end);
+                        if (match >= 0) {
+                            addText(textStart, i);
+                            // Closes the matched tag and anything still open inside it
+                            while (open > match) {
+                                subtreeEnds[openNodes[--open]] = count;
+                            }
+                            i = textStart = end + 1;
+                            continue;
+                        }
+                    } else if (end > 0) {
+                        int text = count;
+                        addText(textStart, i);
+                        int node = addTag(i + 1, end);
+                        if (node >= 0) {
+                            if (open == openNodes.length) {
+                                openNodes = Arrays.copyOf(openNodes, open * 2);
+                            }
+                            openNodes[open++] = node;
+                            depth = Math.max(depth, open);
+                            i = textStart = end + 1;
+                            continue;
+                        }
+                        // Not a tag after all: take back the text node so the text stays in one piece
+                        count = text;
+                    }
+                }
+                i++;
+            }
+            addText(textStart, length);
+            while (open > 0) {
+                subtreeEnds[openNodes[--open]] = count;
+            }
+        }
+
+        /**
+         * Parses an opening tag's content and adds its node.
+         *
+         * @return the node index, or -1 if the content is not a known tag
+         */
+        private int addTag(int from, int to) {
+            int colon = source.indexOf(':', from);
+            int nameEnd = colon >= 0 && colon < to ? colon : to;
+
+            int style = styleBits(from, nameEnd);
+            if (style != 0 && nameEnd == to) {
+                return addNode(STYLE, from, to, style);
+            }
+            if (is("rainbow", from, nameEnd) && nameEnd == to) {
+                return addNode(RAINBOW, from, to, 0);
+            }
+            if (is("link", from, nameEnd) && nameEnd + 1 < to) {
+                constants.add(source.substring(nameEnd + 1, to));
+                return addNode(LINK, from, to, constants.size() - 1);
+            }
+            if ((is("color", from, nameEnd) || is("c", from, nameEnd)) && nameEnd + 1 < to) {
+                int rgb = resolveColor(nameEnd + 1, to);
+                return rgb != -1 ? addNode(COLOR, from, to, rgb) : -1;
+            }
+            if (is("gradient", from, nameEnd) && nameEnd < to) {
+                return addGradient(from, nameEnd + 1, to);
+            }
+            if (nameEnd == to) {
+                // Shorthand: <red>, <#ff5555>
+                int rgb = resolveColor(from, to);
+                if (rgb != -1) {
+                    return addNode(COLOR, from, to, rgb);
+                }
+            }
+            return -1;
+        }
+
+        private int addGradient(int tagStart, int argsStart, int to) {
+            List<Color> stops = new ArrayList<>();
+            Interpolation mode = Interpolation.LINEAR;
+            int start = argsStart;
+            while (start <= to) {
+                int end = source.indexOf(':', start);
+                if (end < 0 || end > to) {
+                    end = to;
+                }
+                int rgb = resolveColor(start, end);
+                if (rgb != -1) {
+                    stops.add(new Color(rgb));
+                } else if (end == to && stops.size() >= 2 && Interpolation.getByName(source.substring(start, end)) != null) {
+                    mode = Interpolation.getByName(source.substring(start, end));
+                } else {
+                    return -1;
+                }
+                start = end + 1;
+            }
+            if (stops.size() < 2) {
+                return -1;
+            }
+            constants.add(List.copyOf(stops));
+            constants.add(mode);
+            return addNode(GRADIENT, tagStart, to, constants.size() - 2);
+        }
+
+        /**
+         * Finds the innermost open tag a closing tag refers to.
+         *
+         * @return its position in the open stack, or -1 if none matches
+         */
+        private int findOpen(int[] openNodes, int open, int from, int to) {
+            byte kind;
+            int style = styleBits(from, to);
+            if (style != 0) {
+                kind = STYLE;
+            } else if (is("rainbow", from, to)) {
+                kind = RAINBOW;
+            } else if (is("link", from, to)) {
+                kind = LINK;
+            } else if (is("gradient", from, to)) {
+                kind = GRADIENT;
+            } else if (is("color", from, to) || is("c", from, to) || resolveColor(from, to) != -1) {
+                kind = COLOR;
+            } else {
+                return -1;
+            }
+            for (int k = open - 1; k >= 0; k--) {
+                int node = openNodes[k];
+                if (kinds[node] == kind && (kind != STYLE || values[node] == style)) {
+                    return k;
+                }
+            }
+            return -1;
+        }
+
+        private int styleBits(int from, int to) {
+            if (is("bold", from, to) || is("b", from, to)) return ParsedMessage.BOLD;
+            if (is("italic", from, to) || is("i", from, to) || is("em", from, to)) return ParsedMessage.ITALIC;
+            if (is("underline", from, to) || is("u", from, to)) return ParsedMessage.UNDERLINE;
+            if (is("monospace", from, to) || is("mono", from, to)) return ParsedMessage.MONOSPACE;
+            return 0;
+        }
+
+        private int resolveColor(int from, int to) {
+            if (from < to && source.charAt(from) == '#') {
+                return to - from == 7 ? ColorRegistry.parseHex(source, from + 1, to) : -1;
+            }
+            return ColorRegistry.lookup(source, from, to);
+        }
+
+        private boolean is(String name, int from, int to) {
+            return to - from == name.length() && source.regionMatches(true, from, name, 0, name.length());
+        }
+
+        private int placeholderEnd(int start) {
+            int limit = Math.min(source.length(), start + 2 + PlaceholderContext.MAX_KEY_LENGTH);
+            for (int i = start + 1; i < limit; i++) {
+                char c = source.charAt(i);
+                if (c == '}') {
+                    return i > start + 1 ? i : -1;
+                }
+                if (!PlaceholderContext.isKeyChar(c)) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        private void addText(int from, int to) {
+            if (from < to) {
+                addNode(TEXT, from, to, 0);
+            }
+        }
+
+        private int addNode(byte kind, int start, int end, int value) {
+            if (count == kinds.length) {
+                int capacity = count * 2;
+                kinds = Arrays.copyOf(kinds, capacity);
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                values = Arrays.copyOf(values, capacity);
+                subtreeEnds = Arrays.copyOf(subtreeEnds, capacity);
+            }
+            kinds[count] = kind;
+            starts[count] = start;
+            ends[count] = end;
+            values[count] = value;
+            subtreeEnds[count] = count + 1;
+            return count++;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package org.slamstudios.simplecolor;
+
+import com.hypixel.hytale.server.core.Message;
+import org.slamstudios.simplecolor.enums.ChatColor;
+import org.slamstudios.simplecolor.enums.ChatFormat;
+import org.slamstudios.simplecolor.enums.Interpolation;
+
+import javax.annotation.Nonnull;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fluent builder for colored messages.
+ *
+ * Produces segments directly instead of encoding color codes into a string
+ * and parsing them back. Styling works like the color codes: a color,
+ * gradient or rainbow applies to the following text until the next color,
+ * formats stack until {@link #reset()}. A gradient runs across format changes
+ * and links, with its colors spread over all of its text.
+ *
+ * Example:
+ * <pre>
+ * Message msg = SimpleColor.builder()
+ *         .color(ChatColor.RED).text("Error: ")
+ *         .gradient("gold", "yellow").bold().text("check the docs ")
+ *         .link("https://example.com", "here")
+ *         .build();
+ * </pre>
+ */
+public final class MessageBuilder {
+
+    private final SegmentBuffer segments = new SegmentBuffer();
+    private final SegmentWriter writer = new SegmentWriter(segments);
+
+    MessageBuilder() {}
+
+    /**
+     * Uses a legacy color for the following text.
+     */
+    @Nonnull
+    public MessageBuilder color(@Nonnull ChatColor color) {
+        return color(color.getColor());
+    }
+
+    /**
+     * Uses an RGB color for the following text.
+     */
+    @Nonnull
+    public MessageBuilder color(@Nonnull Color color) {
+        writer.color(color.getRGB() & 0xFFFFFF);
+        return this;
+    }
+
+    /**
+     * Uses a hex color (#RRGGBB or RRGGBB) for the following text.
+     */
+    @Nonnull
+    public MessageBuilder hex(@Nonnull String hexCode) {
+        return color(ChatColor.parseHex(hexCode));
+    }
+
+    /**
+     * Uses a gradient through the given colors for the following text.
+     */
+    @Nonnull
+    public MessageBuilder gradient(@Nonnull Color... colors) {
+        return gradient(Interpolation.LINEAR, Arrays.asList(colors));
+    }
+
+    /**
+     * Uses a gradient through the given colors, interpolated in the given color space.
+     */
+    @Nonnull
+    public MessageBuilder gradient(@Nonnull Interpolation mode, @Nonnull List<Color> colors) {
+        if (colors.size() < 2) {
+            throw new IllegalArgumentException("Gradient requires at least 2 colors");
+        }
+        writer.gradient(List.copyOf(colors), mode);
+        return this;
+    }
+
+    /**
+     * Uses a gradient through colors given as names (e.g., "red") or hex codes (e.g., "#FF5733").
+     */
+    @Nonnull
+    public MessageBuilder gradient(@Nonnull String... colors) {
+        return gradient(Interpolation.LINEAR, colors);
+    }
+
+    /**
+     * Uses a gradient through named or hex colors, interpolated in the given color space.
+     */
+    @Nonnull
+    public MessageBuilder gradient(@Nonnull Interpolation mode, @Nonnull String... colors) {
+        List<Color> stops = new ArrayList<>(colors.length);
+        for (String name : colors) {
+            Color color = ChatColor.parseColor(name);
+            if (color == null) {
+                throw new IllegalArgumentException("Invalid color: " + name);
+            }
+            stops.add(color);
+        }
+        return gradient(mode, stops);
+    }
+
+    /**
+     * Uses the rainbow gradient for the following text.
+     */
+    @Nonnull
+    public MessageBuilder rainbow() {
+        writer.rainbow();
+        return this;
+    }
+
+    /**
+     * Applies a format to the following text.
+     */
+    @Nonnull
+    public MessageBuilder format(@Nonnull ChatFormat format) {
+        writer.format(format);
+        return this;
+    }
+
+    @Nonnull
+    public MessageBuilder bold() {
+        return format(ChatFormat.BOLD);
+    }
+
+    @Nonnull
+    public MessageBuilder italic() {
+        return format(ChatFormat.ITALIC);
+    }
+
+    @Nonnull
+    public MessageBuilder underline() {
+        return format(ChatFormat.UNDERLINE);
+    }
+
+    @Nonnull
+    public MessageBuilder monospace() {
+        return format(ChatFormat.MONOSPACE);
+    }
+
+    /**
+     * Clears the color, gradient and all formats.
+     */
+    @Nonnull
+    public MessageBuilder reset() {
+        return format(ChatFormat.RESET);
+    }
+
+    /**
+     * Appends literal text in the current style. Color codes in it are not interpreted.
+     */
+    @Nonnull
+    public MessageBuilder text(@Nonnull String text) {
+        writer.append(text, 0, text.length());
+        return this;
+    }
+
+    /**
+     * Appends text containing color codes, parsed without permission checks.
+     * The current style does not carry into or out of the parsed text.
+     */
+    @Nonnull
+    public MessageBuilder parse(@Nonnull String input) {
+        writer.flush();
+        segments.append(ColorParser.parseSegments(input));
+        return this;
+    }
+
+    /**
+     * Appends clickable text in the current style.
+     */
+    @Nonnull
+    public MessageBuilder link(@Nonnull String url, @Nonnull String text) {
+        writer.link(url, text);
+        return this;
+    }
+
+    /**
+     * Builds the segment form, e.g. to render it per viewer.
+     */
+    @Nonnull
+    public ParsedMessage buildSegments() {
+        writer.flush();
+        return segments.build();
+    }
+
+    /**
+     * Builds the Message.
+     */
+    @Nonnull
+    public Message build() {
+        return buildSegments().toMessage();
+    }
+}
@@ -0,0 +1,302 @@
+package org.slamstudios.simplecolor;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+
+/**
+ * Keyed, localized messages with color codes, loaded from one JSON file per
+ * locale, e.g. {@code messages/en_us.json}:
+ * <pre>
+ * {
+ *   "welcome": "&amp;#gold:yellowWelcome, {player}!",
+ *   "shop": { "bought": "&amp;aYou bought &amp;f{item}&amp;a." }
+ * }
+ * </pre>
+ * Nested objects become dotted keys ("shop.bought").
+ *
+ * A locale is read and compiled on first use. All its messages are parsed
+ * once and stored together: visible text in one char array and segments in
+ * shared parallel arrays, addressed by offsets, so a large catalog costs a
+ * few arrays instead of a String and a ParsedMessage per entry until a message
+ * is used. Messages with {key} placeholders keep their source, are compiled
+ * on first use and only have their values filled in when formatted.
+ *
+ * Lookups hash the key once. Keys missing from a locale fall back to the
+ * default locale. Safe to use from any thread; {@link #reload} drops the
+ * compiled locales so they are read again on next use.
+ *
+ * Example:
+ * <pre>
+ * MessageCatalog messages = SimpleColor.getMessages(); // null while the plugin is not running
+ * CompiledMessage message = messages.get("de_de", "shop.bought");
+ * player.sendMessage(message.format(PlaceholderContext.of(sender).with("item", "Apfel", false)).toMessage());
+ * </pre>
+ */
+public final class MessageCatalog {
+
+    private final Path directory;
+    private volatile String defaultLocale;
+    private volatile Map<String, Table> tables = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a catalog reading {@code <locale>.json} files from a directory.
+     *
+     * @param directory the directory holding the locale files
+     * @param defaultLocale the locale used for keys missing from another locale
+     */
+    public MessageCatalog(@Nonnull Path directory, @Nonnull String defaultLocale) {
+        this.directory = directory;
+        this.defaultLocale = normalize(defaultLocale);
+    }
+
+    /**
+     * Gets a message, falling back to the default locale.
+     *
+     * @param locale the locale, e.g. "en_us" or "en-US"
+     * @param key the message key
+     * @return the message, or null if neither locale has the key
+     */
+    @Nullable
+    public CompiledMessage get(@Nonnull String locale, @Nonnull String key) {
+        String name = normalize(locale);
+        CompiledMessage message = table(name).get(key);
+        if (message == null && !name.equals(defaultLocale)) {
+            message = table(defaultLocale).get(key);
+        }
+        return message;
+    }
+
+    /**
+     * Gets a message in the default locale.
+     */
+    @Nullable
+    public CompiledMessage get(@Nonnull String key) {
+        return table(defaultLocale).get(key);
+    }
+
+    /**
+     * Gets the number of messages in a locale, compiling it if needed.
+     */
+    public int size(@Nonnull String locale) {
+        return table(normalize(locale)).count;
+    }
+
+    /**
+     * Gets the locale used for keys missing from another locale.
+     */
+    @Nonnull
+    public String getDefaultLocale() {
+        return defaultLocale;
+    }
+
+    /**
+     * Drops all compiled locales; they are read from disk again on next use.
+     */
+    public void reload() {
+        tables = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Sets the default locale and drops all compiled locales.
+     */
+    public void reload(@Nonnull String defaultLocale) {
+        this.defaultLocale = normalize(defaultLocale);
+        reload();
+    }
+
+    private Table table(String locale) {
+        Map<String, Table> current = tables;
+        Table table = current.get(locale);
+        return table != null ? table : current.computeIfAbsent(locale, this::load);
+    }
+
+    private Table load(String locale) {
+        Path file = directory.resolve(locale + ".json");
+        if (!Files.isRegularFile(file)) {
+            return Table.EMPTY;
+        }
+        Map<String, String> entries = new HashMap<>();
+        try {
+            JsonElement root = JsonParser.parseString(Files.readString(file));
+            if (root.isJsonObject()) {
+                flatten("", root.getAsJsonObject(), entries);
+            }
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            SimpleColor plugin = SimpleColor.getInstance();
+            if (plugin != null) {
+                plugin.getLogger().at(Level.WARNING).withCause(e).log("Failed to read messages " + file);
+            }
+            return Table.EMPTY;
+        }
+        return new Table(entries);
+    }
+
+    private static void flatten(String prefix, JsonObject object, Map<String, String> out) {
+        for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+            String key = prefix + entry.getKey();
+            JsonElement value = entry.getValue();
+            if (value.isJsonObject()) {
+                flatten(key + ".", value.getAsJsonObject(), out);
+            } else if (value.isJsonPrimitive()) {
+                out.put(key, value.getAsString());
+            }
+        }
+    }
+
+    private static String normalize(String locale) {
+        return locale.replace('-', '_').toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * All messages of one locale, compiled into shared arrays.
+     */
+    static final class Table {
+
+        static final Table EMPTY = new Table(Map.of());
+
+        final int count;
+        final String[] keys;
+        // Open addressing, message index + 1 per slot (0 = empty)
+        private final int[] slots;
+
+        // Visible text of each message, or its source if it has placeholders
+        final char[] chars;
+        final int[] charStarts;
+        final boolean[] templates;
+
+        // Segments of each message; ends are relative to the message's text
+        final int[] segmentStarts;
+        final int[] ends;
+        final int[] colors;
+        final byte[] styles;
+        @Nullable final int[] linkIds;
+        @Nullable final int[] gradientIds;
+        @Nullable final int[] gradientOffsets;
+        final String[] linkPool;
+        final GradientSpec[] gradientPool;
+
+        // Built on first use: the ParsedMessage of a plain message, the Template of one with placeholders
+        final AtomicReferenceArray<ParsedMessage> built;
+        final AtomicReferenceArray<Template> compiled;
+
+        Table(Map<String, String> entries) {
+            count = entries.size();
+            keys = entries.keySet().toArray(new String[0]);
+            Arrays.sort(keys);
+            slots = new int[Integer.highestOneBit(Math.max(1, count) * 2) << 1];
+            for (int i = 0; i < count; i++) {
+                int slot = keys[i].hashCode() & (slots.length - 1);
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & (slots.length - 1);
+                }
+                slots[slot] = i + 1;
+            }
+
+            // Parse everything first to size the arrays exactly
+            ParsedMessage[] parsed = new ParsedMessage[count];
+            templates = new boolean[count];
+            int charCount = 0;
+            int segmentCount = 0;
+            boolean anyLinks = false;
+            boolean anyGradients = false;
+            for (int i = 0; i < count; i++) {
+                String source = entries.get(keys[i]);
+                if (ColorParser.hasPlaceholders(source)) {
+                    templates[i] = true;
+                    charCount += source.length();
+                    continue;
+                }
+                ParsedMessage message = ColorParser.parseSegments(source);
+                parsed[i] = message;
+                charCount += message.text.length();
+                segmentCount += message.size;
+                anyLinks |= message.links != null;
+                anyGradients |= message.gradients != null;
+            }
+
+            chars = new char[charCount];
+            charStarts = new int[count + 1];
+            segmentStarts = new int[count + 1];
+            ends = new int[segmentCount];
+            colors = new int[segmentCount];
+            styles = new byte[segmentCount];
+            linkIds = anyLinks ? new int[segmentCount] : null;
+            gradientIds = anyGradients ? new int[segmentCount] : null;
+            gradientOffsets = anyGradients ? new int[segmentCount] : null;
+            Map<String, Integer> links = new HashMap<>();
+            Map<GradientSpec, Integer> gradients = new IdentityHashMap<>();
+            List<String> linkList = new ArrayList<>();
+            List<GradientSpec> gradientList = new ArrayList<>();
+
+            int charPos = 0;
+            int segment = 0;
+            for (int i = 0; i < count; i++) {
+                charStarts[i] = charPos;
+                segmentStarts[i] = segment;
+                ParsedMessage message = parsed[i];
+                String text = message != null ? message.text : entries.get(keys[i]);
+                text.getChars(0, text.length(), chars, charPos);
+                charPos += text.length();
+                if (message == null) {
+                    continue;
+                }
+                for (int s = 0; s < message.size; s++, segment++) {
+                    ends[segment] = message.ends[s];
+                    colors[segment] = message.colors[s];
+                    styles[segment] = message.styles[s];
+                    if (linkIds != null) {
+                        String link = message.linkAt(s);
+                        linkIds[segment] = link == null ? -1 : links.computeIfAbsent(link, l -> {
+                            linkList.add(l);
+                            return linkList.size() - 1;
+                        });
+                    }
+                    if (gradientIds != null) {
+                        GradientSpec gradient = message.gradientAt(s);
+                        gradientIds[segment] = gradient == null ? -1 : gradients.computeIfAbsent(gradient, g -> {
+                            gradientList.add(g);
+                            return gradientList.size() - 1;
+                        });
+                        gradientOffsets[segment] = gradient != null ? message.gradientOffset[s] : 0;
+                    }
+                }
+            }
+            charStarts[count] = charPos;
+            segmentStarts[count] = segment;
+            linkPool = linkList.toArray(new String[0]);
+            gradientPool = gradientList.toArray(new GradientSpec[0]);
+            built = new AtomicReferenceArray<>(count);
+            compiled = new AtomicReferenceArray<>(count);
+        }
+
+        @Nullable
+        CompiledMessage get(String key) {
+            int mask = slots.length - 1;
+            for (int slot = key.hashCode() & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+                int index = slots[slot] - 1;
+                if (keys[index].equals(key)) {
+                    return new CompiledMessage(this, index);
+                }
+            }
+            return null;
+        }
+    }
+}
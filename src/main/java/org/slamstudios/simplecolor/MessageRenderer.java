@@ -0,0 +1,135 @@
+package org.slamstudios.simplecolor;
+
+import com.hypixel.hytale.server.core.Message;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns a {@link ParsedMessage} into a Message, applying a viewer's profile
+ * (palette, stripping, highlight) in the same single pass.
+ */
+final class MessageRenderer {
+
+    private MessageRenderer() {}
+
+    /**
+     * Renders a parsed message for a viewer profile.
+     */
+    @Nonnull
+    static Message render(@Nonnull ParsedMessage parsed, @Nonnull ViewerProfile profile) {
+        Output out = new Output(profile.getPalette());
+        boolean strip = profile.isStripColors();
+        int[] highlights = highlightRanges(parsed, profile.getHighlight());
+        int highlightColor = profile.getHighlightColor().getRGB() & 0xFFFFFF;
+        String text = parsed.text;
+
+        int h = 0;
+        for (int i = 0; i < parsed.size; i++) {
+            int start = parsed.start(i);
+            int end = parsed.ends[i];
+            int style = strip ? 0 : parsed.styles[i];
+            int color = strip ? ParsedMessage.NO_COLOR : parsed.colors[i];
+            String link = parsed.linkAt(i);
+            GradientSpec gradient = strip ? null : parsed.gradientAt(i);
+            int[] gradientColors = gradient != null ? gradient.colors() : null;
+            int gradientBase = gradient != null ? parsed.gradientOffset[i] - start : 0;
+
+            int pos = start;
+            while (pos < end) {
+                // Split the segment where highlighted ranges begin and end
+                while (h < highlights.length && highlights[h + 1] <= pos) {
+                    h += 2;
+                }
+                boolean highlighted = h < highlights.length && highlights[h] <= pos;
+                int stop = end;
+                if (h < highlights.length) {
+                    stop = Math.min(end, highlighted ? highlights[h + 1] : highlights[h]);
+                }
+
+                if (highlighted) {
+                    out.emit(text, pos, stop, highlightColor, style | ParsedMessage.BOLD, link, false);
+                } else if (gradientColors != null) {
+                    // One part per unit, so surrogate pairs and clusters stay whole
+                    for (int j = pos, next; j < stop; j = next) {
+                        next = j + 1;
+                        while (next < stop && !gradient.startsUnit(gradientBase + next)) {
+                            next++;
+                        }
+                        out.emit(text, j, next, gradientColors[gradientBase + j], style, link, true);
+                    }
+                } else {
+                    out.emit(text, pos, stop, color, style, link, true);
+                }
+                pos = stop;
+            }
+        }
+        return out.finish();
+    }
+
+    /**
+     * Finds every occurrence of the highlight word as [start, end) pairs.
+     */
+    private static int[] highlightRanges(@Nonnull ParsedMessage parsed, @Nullable String word) {
+        if (word == null) {
+            return new int[0];
+        }
+        List<Integer> ranges = new ArrayList<>();
+        int index = parsed.indexOfWord(word, 0);
+        while (index >= 0) {
+            ranges.add(index);
+            ranges.add(index + word.length());
+            index = parsed.indexOfWord(word, index + word.length());
+        }
+        int[] result = new int[ranges.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ranges.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Accumulates Message parts.
+     */
+    private static final class Output {
+        @Nullable private final ColorPalette palette;
+        private Message result;
+
+        Output(@Nullable ColorPalette palette) {
+            this.palette = palette;
+        }
+
+        void emit(String text, int from, int to, int color, int style, @Nullable String link, boolean remap) {
+            Message msg = Message.raw(text.substring(from, to));
+
+            if (color != ParsedMessage.NO_COLOR) {
+                msg = msg.color(new Color(remap && palette != null ? palette.remap(color) : color));
+            }
+            if ((style & ParsedMessage.BOLD) != 0) {
+                msg = msg.bold(true);
+            }
+            if ((style & ParsedMessage.ITALIC) != 0) {
+                msg = msg.italic(true);
+            }
+            if ((style & ParsedMessage.MONOSPACE) != 0) {
+                msg = msg.monospace(true);
+            }
+            if (link != null) {
+                msg = msg.link(link);
+            }
+
+            if (result == null) {
+                result = msg;
+            } else {
+                result = result.insert(msg);
+            }
+        }
+
+        Message finish() {
+            return result != null ? result : Message.raw("");
+        }
+    }
+}
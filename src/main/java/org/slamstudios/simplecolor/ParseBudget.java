@@ -0,0 +1,162 @@
+package org.slamstudios.simplecolor;
+
+import org.slamstudios.simplecolor.enums.Degradation;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-player accounting of parse cost over a sliding window.
+ *
+ * Each player's window is a ring of time buckets holding the nanoseconds
+ * spent parsing and the segments produced. Updates are plain atomic adds,
+ * so players parsing at the same time never block each other. The totals
+ * are approximate: a bucket being recycled may lose a concurrent update.
+ *
+ * A player over budget gets solid colors instead of gradients; a player
+ * over twice the budget gets plain text.
+ */
+final class ParseBudget {
+
+    private ParseBudget() {}
+
+    private static final int BUCKETS = 10;
+    // Each bucket is three longs: epoch, nanos, segments
+    private static final int EPOCH = 0;
+    private static final int NANOS = 1;
+    private static final int SEGMENTS = 2;
+
+    // Idle accounts are dropped every this many recordings, on a background thread
+    private static final int SWEEP_INTERVAL = 1024;
+
+    private static final Map<UUID, Account> ACCOUNTS = new ConcurrentHashMap<>();
+    private static final AtomicLong RECORDED = new AtomicLong();
+    private static final AtomicBoolean SWEEPING = new AtomicBoolean();
+
+    /**
+     * Gets how a player's next message should be degraded.
+     */
+    @Nonnull
+    static Degradation degradationFor(@Nonnull UUID player) {
+        SimpleColorConfig config = SimpleColor.getConfig();
+        if (config == null || !isEnabled(config)) {
+            return Degradation.NONE;
+        }
+        Account account = ACCOUNTS.get(player);
+        if (account == null) {
+            return Degradation.NONE;
+        }
+
+        long bucketNanos = bucketNanos(config);
+        long epoch = Math.floorDiv(System.nanoTime(), bucketNanos);
+        double usage = Math.max(
+                ratio(account.sum(epoch, NANOS), config.getParseBudgetNanos()),
+                ratio(account.sum(epoch, SEGMENTS), config.getParseBudgetSegments()));
+        if (usage >= 2) {
+            return Degradation.PLAIN;
+        }
+        return usage >= 1 ? Degradation.SOLID : Degradation.NONE;
+    }
+
+    /**
+     * Charges one parse to a player.
+     */
+    static void record(@Nonnull UUID player, long nanos, int segments) {
+        SimpleColorConfig config = SimpleColor.getConfig();
+        if (config == null || !isEnabled(config)) {
+            return;
+        }
+        long bucketNanos = bucketNanos(config);
+        long epoch = Math.floorDiv(System.nanoTime(), bucketNanos);
+        ACCOUNTS.computeIfAbsent(player, k -> new Account()).add(epoch, nanos, segments);
+
+        if (RECORDED.incrementAndGet() % SWEEP_INTERVAL == 0) {
+            sweep(epoch);
+        }
+    }
+
+    /**
+     * Drops idle accounts on a daemon thread, so chat never walks the whole map.
+     * Skipped while the previous sweep is still running.
+     */
+    private static void sweep(long epoch) {
+        if (!SWEEPING.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                ACCOUNTS.values().removeIf(account -> account.isIdle(epoch));
+            } finally {
+                SWEEPING.set(false);
+            }
+        }, "SimpleColor-BudgetSweep");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Forgets all accounting, e.g. after the budget was changed.
+     */
+    static void clear() {
+        ACCOUNTS.clear();
+    }
+
+    private static boolean isEnabled(SimpleColorConfig config) {
+        return config.getParseBudgetNanos() > 0 || config.getParseBudgetSegments() > 0;
+    }
+
+    private static long bucketNanos(SimpleColorConfig config) {
+        long window = TimeUnit.SECONDS.toNanos(Math.max(1, config.getParseBudgetWindowSeconds()));
+        return window / BUCKETS;
+    }
+
+    private static double ratio(long used, long budget) {
+        return budget > 0 ? (double) used / budget : 0;
+    }
+
+    /**
+     * One player's ring of buckets.
+     */
+    private static final class Account {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS * 3);
+
+        void add(long epoch, long nanos, int segments) {
+            // nanoTime may be negative, so the epoch may be too
+            int base = Math.floorMod(epoch, BUCKETS) * 3;
+            long seen = buckets.get(base + EPOCH);
+            if (seen != epoch && buckets.compareAndSet(base + EPOCH, seen, epoch)) {
+                // This thread won the bucket for the new epoch; drop what is left from a lap ago
+                buckets.set(base + NANOS, 0);
+                buckets.set(base + SEGMENTS, 0);
+            }
+            buckets.addAndGet(base + NANOS, nanos);
+            buckets.addAndGet(base + SEGMENTS, segments);
+        }
+
+        long sum(long epoch, int field) {
+            long total = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                int base = b * 3;
+                if (epoch - buckets.get(base + EPOCH) < BUCKETS) {
+                    total += buckets.get(base + field);
+                }
+            }
+            return total;
+        }
+
+        boolean isIdle(long epoch) {
+            for (int b = 0; b < BUCKETS; b++) {
+                if (epoch - buckets.get(b * 3 + EPOCH) < BUCKETS) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
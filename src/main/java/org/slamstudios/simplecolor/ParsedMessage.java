@@ -0,0 +1,264 @@
+package org.slamstudios.simplecolor;
+
+import com.hypixel.hytale.server.core.Message;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.awt.Color;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The result of parsing color codes, before it is turned into a Message.
+ *
+ * Text is stored once; segments are described by parallel arrays of end
+ * offsets, colors, styles, links and gradient references. Queries such as
+ * {@link #getPlainText()} or {@link #hasLinks()} work on this form directly,
+ * and the Message is only built when {@link #toMessage()} is first called.
+ * A parsed message can be rendered for many viewers, and each distinct
+ * {@link ViewerProfile} is rendered only once.
+ *
+ * Instances are immutable and safe to share between threads.
+ */
+public final class ParsedMessage {
+
+    static final int NO_COLOR = -1;
+
+    static final int BOLD = 1;
+    static final int ITALIC = 1 << 1;
+    static final int UNDERLINE = 1 << 2;
+    static final int MONOSPACE = 1 << 3;
+
+    static final ParsedMessage EMPTY = new ParsedMessage("", 0, new int[0], new int[0], new byte[0],
+            null, null, null, null);
+
+    final String text;
+    final int size;
+    final int[] ends;
+    final int[] colors;
+    final byte[] styles;
+    @Nullable final String[] links;
+    @Nullable final int[] gradientIndex;
+    @Nullable final int[] gradientOffset;
+    @Nullable final GradientSpec[] gradients;
+    // Where the text the sender wrote lies, e.g. {message} in chat; the whole text if not known
+    final int senderStart;
+    final int senderEnd;
+
+    // Lazily computed query results
+    private int visibleLength = -1;
+    private volatile Set<Color> distinctColors;
+
+    // Rendered Messages, by viewer profile
+    private volatile Message defaultMessage;
+    private volatile Map<ViewerProfile, Message> rendered;
+
+    ParsedMessage(String text, int size, int[] ends, int[] colors, byte[] styles, @Nullable String[] links,
+                  @Nullable int[] gradientIndex, @Nullable int[] gradientOffset, @Nullable GradientSpec[] gradients) {
+        this(text, size, ends, colors, styles, links, gradientIndex, gradientOffset, gradients, 0, text.length());
+    }
+
+    ParsedMessage(String text, int size, int[] ends, int[] colors, byte[] styles, @Nullable String[] links,
+                  @Nullable int[] gradientIndex, @Nullable int[] gradientOffset, @Nullable GradientSpec[] gradients,
+                  int senderStart, int senderEnd) {
+        this.text = text;
+        this.size = size;
+        this.ends = ends;
+        this.colors = colors;
+        this.styles = styles;
+        this.links = links;
+        this.gradientIndex = gradientIndex;
+        this.gradientOffset = gradientOffset;
+        this.gradients = gradients;
+        this.senderStart = senderStart;
+        this.senderEnd = senderEnd;
+    }
+
+    /**
+     * Joins several parsed messages into one, keeping every segment's styling.
+     */
+    @Nonnull
+    public static ParsedMessage concat(@Nonnull ParsedMessage... parts) {
+        int length = 0;
+        for (ParsedMessage part : parts) {
+            length += part.text.length();
+        }
+        SegmentBuffer buffer = new SegmentBuffer(length);
+        for (ParsedMessage part : parts) {
+            buffer.append(part);
+        }
+        return buffer.build();
+    }
+
+    /**
+     * Gets the text without any color codes.
+     */
+    @Nonnull
+    public String getPlainText() {
+        return text;
+    }
+
+    /**
+     * Gets the number of visible characters, counting surrogate pairs once.
+     */
+    public int getVisibleLength() {
+        int length = visibleLength;
+        if (length < 0) {
+            length = text.codePointCount(0, text.length());
+            visibleLength = length;
+        }
+        return length;
+    }
+
+    /**
+     * Whether the message has no visible text.
+     */
+    public boolean isEmpty() {
+        return text.isEmpty();
+    }
+
+    /**
+     * Whether any part of the message is a clickable link.
+     */
+    public boolean hasLinks() {
+        // The links array is only allocated once a link segment was added
+        return links != null;
+    }
+
+    /**
+     * Whether any part of the message uses a gradient or rainbow.
+     */
+    public boolean hasGradients() {
+        return gradients != null;
+    }
+
+    /**
+     * Gets every distinct color used, including each step of a gradient, in order of appearance.
+     */
+    @Nonnull
+    public Set<Color> getDistinctColors() {
+        Set<Color> result = distinctColors;
+        if (result == null) {
+            Set<Integer> seen = new LinkedHashSet<>();
+            for (int i = 0; i < size; i++) {
+                GradientSpec gradient = gradientAt(i);
+                if (gradient != null) {
+                    int[] steps = gradient.colors();
+                    int offset = gradientOffset[i];
+                    for (int j = 0, n = ends[i] - start(i); j < n; j++) {
+                        seen.add(steps[offset + j]);
+                    }
+                } else if (colors[i] != NO_COLOR) {
+                    seen.add(colors[i]);
+                }
+            }
+            Set<Color> colorSet = new LinkedHashSet<>(seen.size());
+            for (int rgb : seen) {
+                colorSet.add(new Color(rgb));
+            }
+            result = Collections.unmodifiableSet(colorSet);
+            distinctColors = result;
+        }
+        return result;
+    }
+
+    /**
+     * Builds the Message with no viewer-specific changes.
+     * The result is cached, so repeated calls return the same instance.
+     */
+    @Nonnull
+    public Message toMessage() {
+        Message message = defaultMessage;
+        if (message == null) {
+            message = MessageRenderer.render(this, ViewerProfile.DEFAULT);
+            defaultMessage = message;
+        }
+        return message;
+    }
+
+    /**
+     * Builds the Message as seen by a viewer with the given profile.
+     * Each distinct profile is rendered once and then served from a cache.
+     */
+    @Nonnull
+    public Message render(@Nonnull ViewerProfile profile) {
+        profile = normalize(profile);
+        if (profile.equals(ViewerProfile.DEFAULT)) {
+            return toMessage();
+        }
+
+        Map<ViewerProfile, Message> cache = rendered;
+        if (cache == null) {
+            synchronized (this) {
+                cache = rendered;
+                if (cache == null) {
+                    cache = new ConcurrentHashMap<>(4);
+                    rendered = cache;
+                }
+            }
+        }
+        return cache.computeIfAbsent(profile, p -> MessageRenderer.render(this, p));
+    }
+
+    /**
+     * Reduces a profile to what actually changes this message's output, so
+     * profiles that render identically compare equal.
+     */
+    @Nonnull
+    ViewerProfile normalize(@Nonnull ViewerProfile profile) {
+        // A highlight that never matches renders like no highlight
+        if (profile.getHighlight() != null && indexOfWord(profile.getHighlight(), 0) < 0) {
+            return profile.withHighlight(null);
+        }
+        return profile;
+    }
+
+    /**
+     * Start offset of a segment in the text.
+     */
+    int start(int index) {
+        return index == 0 ? 0 : ends[index - 1];
+    }
+
+    @Nullable
+    String linkAt(int index) {
+        return links != null ? links[index] : null;
+    }
+
+    @Nullable
+    GradientSpec gradientAt(int index) {
+        if (gradientIndex == null || gradientIndex[index] < 0) {
+            return null;
+        }
+        return gradients[gradientIndex[index]];
+    }
+
+    /**
+     * Finds a case-insensitive occurrence of a whole word in the text the sender
+     * wrote: no letter or digit directly before or after it, so "Al" is not found
+     * in "Also". A sender's own name in the format around it is not searched.
+     */
+    int indexOfWord(@Nonnull String word, int from) {
+        int last = senderEnd - word.length();
+        for (int i = Math.max(from, senderStart); i <= last; i++) {
+            if (text.regionMatches(true, i, word, 0, word.length())
+                    && (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)))
+                    && (i + word.length() == text.length()
+                        || !Character.isLetterOrDigit(text.charAt(i + word.length())))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the plain text.
+     */
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,109 @@
+package org.slamstudios.simplecolor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A registered {key} placeholder.
+ *
+ * Values are untrusted by default: they are inserted as plain text, so a
+ * player name containing &amp; cannot inject color codes. Trusted values are
+ * parsed for codes like the surrounding text.
+ *
+ * Example:
+ * <pre>
+ * SimpleColor.registerPlaceholder(Placeholder.of("online", ctx -> String.valueOf(countOnline()))
+ *         .cachedFor(50, TimeUnit.MILLISECONDS));
+ * </pre>
+ */
+public final class Placeholder {
+
+    private final String key;
+    private final PlaceholderResolver resolver;
+    private final boolean trusted;
+    private final long cacheNanos;
+
+    // Last value for placeholders cached across messages
+    private volatile String cachedValue;
+    private volatile long cachedAt;
+
+    private Placeholder(String key, PlaceholderResolver resolver, boolean trusted, long cacheNanos) {
+        this.key = key;
+        this.resolver = resolver;
+        this.trusted = trusted;
+        this.cacheNanos = cacheNanos;
+    }
+
+    /**
+     * Creates an untrusted placeholder, resolved once per message.
+     *
+     * @param key the name between the braces, e.g. "player" for {player}
+     * @param resolver supplies the value
+     * @return the placeholder
+     */
+    @Nonnull
+    public static Placeholder of(@Nonnull String key, @Nonnull PlaceholderResolver resolver) {
+        if (key.isEmpty() || key.length() > PlaceholderContext.MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Invalid placeholder key: " + key);
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (!PlaceholderContext.isKeyChar(key.charAt(i))) {
+                throw new IllegalArgumentException("Invalid placeholder key: " + key);
+            }
+        }
+        return new Placeholder(key, resolver, false, 0);
+    }
+
+    /**
+     * Returns a copy whose value is parsed for color codes.
+     * Only use for values players cannot influence.
+     */
+    @Nonnull
+    public Placeholder trusted() {
+        return new Placeholder(key, resolver, true, cacheNanos);
+    }
+
+    /**
+     * Returns a copy whose value is shared by all messages for the given time,
+     * e.g. one tick. Only for values that do not depend on the sender.
+     */
+    @Nonnull
+    public Placeholder cachedFor(long duration, @Nonnull TimeUnit unit) {
+        return new Placeholder(key, resolver, trusted, unit.toNanos(duration));
+    }
+
+    /**
+     * Gets the name between the braces.
+     */
+    @Nonnull
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Whether the value is parsed for color codes.
+     */
+    public boolean isTrusted() {
+        return trusted;
+    }
+
+    /**
+     * Resolves the value, serving it from the shared cache while it is fresh.
+     */
+    @Nullable
+    String resolve(@Nonnull PlaceholderContext context) {
+        if (cacheNanos <= 0) {
+            return resolver.resolve(context);
+        }
+        long now = System.nanoTime();
+        String value = cachedValue;
+        if (value != null && now - cachedAt < cacheNanos) {
+            return value;
+        }
+        value = resolver.resolve(context);
+        cachedValue = value;
+        cachedAt = now;
+        return value;
+    }
+}
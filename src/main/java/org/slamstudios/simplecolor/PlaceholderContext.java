@@ -0,0 +1,212 @@
+package org.slamstudios.simplecolor;
+
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-message state for placeholder expansion: the sender, values bound only
+ * for this message, and the values already resolved so each placeholder
+ * resolves at most once per message.
+ *
+ * Example:
+ * <pre>
+ * PlaceholderContext context = PlaceholderContext.of(sender).with("message", content, true);
+ * ParsedMessage parsed = ColorParser.parseSegments(format, null, context);
+ * </pre>
+ */
+public final class PlaceholderContext {
+
+    static final int MAX_KEY_LENGTH = 64;
+
+    // Placeholders registered through SimpleColor
+    private static final Map<String, Placeholder> REGISTRY = new ConcurrentHashMap<>();
+
+    static {
+        register(Placeholder.of("player", context ->
+                context.getSender() != null ? context.getSender().getUsername() : null));
+    }
+
+    @Nullable private final PlayerRef sender;
+    private final Map<String, Placeholder> local = new HashMap<>(4);
+    private final Map<String, Resolved> resolved = new HashMap<>(4);
+    @Nullable private String senderKey;
+    @Nullable private String senderText;
+    @Nullable private String fingerprintKey;
+    private long fingerprint;
+    @Nullable private String filterKey;
+    @Nullable private WordFilter filter;
+
+    private PlaceholderContext(@Nullable PlayerRef sender) {
+        this.sender = sender;
+    }
+
+    /**
+     * Creates a context for a message sent by the given player (or null for none).
+     */
+    @Nonnull
+    public static PlaceholderContext of(@Nullable PlayerRef sender) {
+        return new PlaceholderContext(sender);
+    }
+
+    /**
+     * Binds a value for this message only. It takes precedence over registered placeholders.
+     *
+     * @param key the placeholder name
+     * @param value the value
+     * @param trusted whether the value is parsed for color codes
+     * @return this context
+     */
+    @Nonnull
+    public PlaceholderContext with(@Nonnull String key, @Nonnull String value, boolean trusted) {
+        Placeholder placeholder = Placeholder.of(key, context -> value);
+        local.put(key, trusted ? placeholder.trusted() : placeholder);
+        return this;
+    }
+
+    /**
+     * Marks the placeholder whose value the sender wrote, e.g. {message} in chat.
+     * A sender over their parse budget then gets reduced styling only inside that
+     * value; the rest of the input is styled in full. Without a mark, the whole
+     * input is reduced.
+     *
+     * @param key the placeholder the sender wrote
+     * @return this context
+     */
+    @Nonnull
+    public PlaceholderContext fromSender(@Nonnull String key) {
+        this.senderKey = key;
+        return this;
+    }
+
+    /**
+     * Gets the visible text of the {@link #fromSender} placeholder as it came out of
+     * the parse: codes removed, filtered words not masked. Null if it was not parsed.
+     */
+    @Nullable
+    public String getSenderText() {
+        return senderText;
+    }
+
+    /**
+     * Fingerprints the visible text of a placeholder while it is parsed, see
+     * {@link #getFingerprint()}.
+     *
+     * @param key the placeholder whose text is fingerprinted
+     * @return this context
+     */
+    @Nonnull
+    public PlaceholderContext fingerprint(@Nonnull String key) {
+        this.fingerprintKey = key;
+        return this;
+    }
+
+    /**
+     * Gets a hash of the fingerprinted placeholder's letters and digits, case-folded,
+     * as they came out of the parse. Colors, formats, spacing and punctuation do not
+     * change it. 0 if the placeholder was not parsed or had no letters or digits.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Masks the filter's words in a placeholder's visible text while it is parsed.
+     * Colors and gradients of the masked characters are kept.
+     *
+     * @param key the placeholder whose text is filtered
+     * @param filter the words to mask
+     * @return this context
+     */
+    @Nonnull
+    public PlaceholderContext filter(@Nonnull String key, @Nonnull WordFilter filter) {
+        this.filterKey = key;
+        this.filter = filter;
+        return this;
+    }
+
+    @Nullable
+    WordFilter filterFor(@Nonnull String key) {
+        return key.equals(filterKey) ? filter : null;
+    }
+
+    boolean hasSenderText() {
+        return senderKey != null;
+    }
+
+    boolean isFromSender(@Nonnull String key) {
+        return key.equals(senderKey);
+    }
+
+    void setSenderText(@Nonnull String text) {
+        this.senderText = text;
+    }
+
+    boolean isFingerprinted(@Nonnull String key) {
+        return key.equals(fingerprintKey);
+    }
+
+    void setFingerprint(long fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Gets the player who sent the message, if any.
+     */
+    @Nullable
+    public PlayerRef getSender() {
+        return sender;
+    }
+
+    /**
+     * Looks up and resolves a placeholder. Returns null if it is unknown or has no value.
+     */
+    @Nullable
+    Resolved resolve(@Nonnull String key) {
+        Resolved result = resolved.get(key);
+        if (result != null || resolved.containsKey(key)) {
+            return result;
+        }
+        Placeholder placeholder = local.get(key);
+        if (placeholder == null) {
+            placeholder = REGISTRY.get(key);
+        }
+        String value = placeholder != null ? placeholder.resolve(this) : null;
+        result = value != null ? new Resolved(value, placeholder.isTrusted()) : null;
+        resolved.put(key, result);
+        return result;
+    }
+
+    static void register(@Nonnull Placeholder placeholder) {
+        REGISTRY.put(placeholder.getKey(), placeholder);
+    }
+
+    static void unregister(@Nonnull String key) {
+        REGISTRY.remove(key);
+    }
+
+    /**
+     * Whether a character may appear in a placeholder key.
+     */
+    static boolean isKeyChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '_' || c == '-' || c == '.';
+    }
+
+    /**
+     * A resolved value and whether it may contain color codes.
+     */
+    static final class Resolved {
+        final String value;
+        final boolean trusted;
+
+        Resolved(String value, boolean trusted) {
+            this.value = value;
+            this.trusted = trusted;
+        }
+    }
+}
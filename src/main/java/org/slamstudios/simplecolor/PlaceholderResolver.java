@@ -0,0 +1,22 @@
+package org.slamstudios.simplecolor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Supplies the value of a {key} placeholder while text is parsed.
+ *
+ * Register with {@link SimpleColor#registerPlaceholder(Placeholder)}.
+ */
+@FunctionalInterface
+public interface PlaceholderResolver {
+
+    /**
+     * Resolves the placeholder value.
+     *
+     * @param context the message being parsed (sender and local values)
+     * @return the value, or null to leave the placeholder text as-is
+     */
+    @Nullable
+    String resolve(@Nonnull PlaceholderContext context);
+}
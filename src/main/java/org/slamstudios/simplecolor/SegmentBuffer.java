@@ -0,0 +1,180 @@
+package org.slamstudios.simplecolor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Growable builder for the flat arrays behind a {@link ParsedMessage}.
+ *
+ * Adjacent solid runs with identical styling are merged as they are appended.
+ */
+final class SegmentBuffer {
+
+    private final StringBuilder text;
+    private int size;
+    private int[] ends;
+    private int[] colors;
+    private byte[] styles;
+    private String[] links;
+    private int[] gradientIndex;
+    private int[] gradientOffset;
+    private List<GradientSpec> gradients;
+    // Range the sender wrote, -1 until marked
+    private int senderStart = -1;
+    private int senderEnd = -1;
+
+    SegmentBuffer() {
+        this(64);
+    }
+
+    SegmentBuffer(int expectedLength) {
+        this.text = new StringBuilder(expectedLength);
+        this.ends = new int[8];
+        this.colors = new int[8];
+        this.styles = new byte[8];
+    }
+
+    /**
+     * Appends a solid run of text.
+     */
+    void append(@Nonnull CharSequence source, int from, int to, int color, int style, @Nullable String link) {
+        if (from >= to) {
+            return;
+        }
+        int last = size - 1;
+        if (last >= 0 && colors[last] == color && styles[last] == style && gradientAt(last) < 0
+                && Objects.equals(linkAt(last), link)) {
+            text.append(source, from, to);
+            ends[last] = text.length();
+            return;
+        }
+        int index = add(color, style, link);
+        text.append(source, from, to);
+        ends[index] = text.length();
+    }
+
+    /**
+     * Appends a run colored by part of a gradient, starting offset characters into it.
+     */
+    void appendGradient(@Nonnull CharSequence source, int from, int to, @Nonnull GradientSpec gradient, int offset,
+                        int style, @Nullable String link) {
+        if (from >= to) {
+            return;
+        }
+        if (gradients == null) {
+            gradients = new ArrayList<>(2);
+            gradientIndex = new int[ends.length];
+            gradientOffset = new int[ends.length];
+            Arrays.fill(gradientIndex, 0, size, -1);
+        }
+        int specIndex = gradients.indexOf(gradient);
+        if (specIndex < 0) {
+            specIndex = gradients.size();
+            gradients.add(gradient);
+        }
+        int index = add(ParsedMessage.NO_COLOR, style, link);
+        gradientIndex[index] = specIndex;
+        gradientOffset[index] = offset;
+        text.append(source, from, to);
+        ends[index] = text.length();
+    }
+
+    /**
+     * Appends every segment of an already parsed message.
+     */
+    void append(@Nonnull ParsedMessage message) {
+        for (int i = 0; i < message.size; i++) {
+            int start = message.start(i);
+            GradientSpec gradient = message.gradientAt(i);
+            if (gradient != null) {
+                appendGradient(message.text, start, message.ends[i], gradient, message.gradientOffset[i],
+                        message.styles[i], message.linkAt(i));
+            } else {
+                append(message.text, start, message.ends[i], message.colors[i], message.styles[i], message.linkAt(i));
+            }
+        }
+    }
+
+    /**
+     * Gets the number of characters appended so far.
+     */
+    int length() {
+        return text.length();
+    }
+
+    /**
+     * Records the range of the text the sender wrote, see {@link ParsedMessage#indexOfWord}.
+     */
+    void markSender(int start, int end) {
+        senderStart = start;
+        senderEnd = end;
+    }
+
+    /**
+     * Whether nothing has been appended yet.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Creates the immutable message from the appended segments.
+     */
+    @Nonnull
+    ParsedMessage build() {
+        if (size == 0) {
+            return ParsedMessage.EMPTY;
+        }
+        return new ParsedMessage(text.toString(), size,
+                Arrays.copyOf(ends, size),
+                Arrays.copyOf(colors, size),
+                Arrays.copyOf(styles, size),
+                links != null ? Arrays.copyOf(links, size) : null,
+                gradients != null ? Arrays.copyOf(gradientIndex, size) : null,
+                gradients != null ? Arrays.copyOf(gradientOffset, size) : null,
+                gradients != null ? gradients.toArray(new GradientSpec[0]) : null,
+                senderStart >= 0 ? senderStart : 0, senderStart >= 0 ? senderEnd : text.length());
+    }
+
+    private int add(int color, int style, @Nullable String link) {
+        if (size == ends.length) {
+            int capacity = size * 2;
+            ends = Arrays.copyOf(ends, capacity);
+            colors = Arrays.copyOf(colors, capacity);
+            styles = Arrays.copyOf(styles, capacity);
+            if (links != null) {
+                links = Arrays.copyOf(links, capacity);
+            }
+            if (gradients != null) {
+                gradientIndex = Arrays.copyOf(gradientIndex, capacity);
+                gradientOffset = Arrays.copyOf(gradientOffset, capacity);
+            }
+        }
+        int index = size++;
+        colors[index] = color;
+        styles[index] = (byte) style;
+        if (link != null && links == null) {
+            links = new String[ends.length];
+        }
+        if (links != null) {
+            links[index] = link;
+        }
+        if (gradients != null) {
+            gradientIndex[index] = -1;
+        }
+        return index;
+    }
+
+    private int gradientAt(int index) {
+        return gradients != null ? gradientIndex[index] : -1;
+    }
+
+    @Nullable
+    private String linkAt(int index) {
+        return links != null ? links[index] : null;
+    }
+}
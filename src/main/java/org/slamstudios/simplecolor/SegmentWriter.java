@@ -0,0 +1,506 @@
+package org.slamstudios.simplecolor;
+
+import org.slamstudios.simplecolor.enums.ChatFormat;
+import org.slamstudios.simplecolor.enums.Degradation;
+import org.slamstudios.simplecolor.enums.Interpolation;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.awt.Color;
+import java.text.BreakIterator;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Tracks the current color, gradient and formats while text is appended,
+ * and writes styled runs to a {@link SegmentBuffer}.
+ *
+ * Shared by {@link ColorParser}, {@link MessageBuilder} and {@link Markup},
+ * so all of them produce identical segments. A gradient is laid over a
+ * span of text whose length is only known when it ends, so runs are held
+ * back until {@link #flush()}.
+ *
+ * A gradient spans everything written while it is active, including text in
+ * other formats, links and text after a restore, and its colors are computed
+ * once over that whole length. Only a new color, gradient or reset ends it.
+ */
+final class SegmentWriter {
+
+    private final SegmentBuffer segments;
+
+    // Text of all runs since the last flush
+    private final StringBuilder pending = new StringBuilder();
+    // Start of the current run in pending
+    private int runStart;
+
+    // Runs ended but not yet written, as parallel arrays
+    private int runCount;
+    private int[] runEnds = new int[8];
+    private int[] runColors = new int[8];
+    private byte[] runStyles = new byte[8];
+    private String[] runLinks = new String[8];
+    private Span[] runSpans = new Span[8];
+    private int[] runOffsets = new int[8];
+
+    private int color = ParsedMessage.NO_COLOR;
+    private Span span;
+    private int style;
+    private String link;
+    private Degradation degradation = Degradation.NONE;
+    // Applied only inside the sender's placeholder value
+    private Degradation senderDegradation = Degradation.NONE;
+    // Visible text of the sender's placeholder value, copied before any masking
+    private StringBuilder senderText;
+    private int senderStart;
+    private int linkCount;
+
+    // Running FNV-1a hash of visible letters and digits, while fingerprinting
+    private boolean fingerprinting;
+    private long fingerprint;
+    private int fingerprinted;
+    // Masks filtered words in pending as they are written
+    private WordFilter.Matcher matcher;
+
+    SegmentWriter(@Nonnull SegmentBuffer segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * Reduces the styling that codes written from now on can set, for players
+     * over their parse budget. The current style is kept.
+     */
+    void degrade(@Nonnull Degradation level) {
+        endRun();
+        degradation = level;
+    }
+
+    /**
+     * Sets the reduction applied between {@link #startSender()} and {@link #endSender()}.
+     */
+    void degradeSender(@Nonnull Degradation level) {
+        senderDegradation = level;
+    }
+
+    /**
+     * Starts text the sender wrote, reduced as set by {@link #degradeSender}.
+     * Its visible text is copied as it is appended, before a filter masks it.
+     */
+    void startSender() {
+        if (senderDegradation != Degradation.NONE) {
+            degrade(senderDegradation);
+        }
+        senderText = new StringBuilder();
+        senderStart = segments.length() + pending.length();
+    }
+
+    /**
+     * Ends text the sender wrote; codes apply in full again.
+     *
+     * @return the visible text appended since {@link #startSender()}, unmasked
+     */
+    @Nonnull
+    String endSender() {
+        if (senderDegradation != Degradation.NONE) {
+            degrade(Degradation.NONE);
+        }
+        segments.markSender(senderStart, segments.length() + pending.length());
+        String text = senderText.toString();
+        senderText = null;
+        return text;
+    }
+
+    /**
+     * Switches to a solid color (packed RGB, or NO_COLOR for the default).
+     */
+    void color(int rgb) {
+        endRun();
+        if (degradation == Degradation.PLAIN) {
+            return;
+        }
+        color = rgb;
+        span = null;
+    }
+
+    /**
+     * Switches to a gradient over the following text.
+     */
+    void gradient(@Nonnull List<Color> stops, @Nonnull Interpolation mode) {
+        if (degradation != Degradation.NONE) {
+            color(stops.getFirst().getRGB() & 0xFFFFFF);
+            return;
+        }
+        endRun();
+        color = ParsedMessage.NO_COLOR;
+        span = new Span(stops, mode);
+    }
+
+    /**
+     * Switches to a rainbow over the following text.
+     */
+    void rainbow() {
+        gradient(ColorParser.RAINBOW_COLORS, Interpolation.LINEAR);
+    }
+
+    /**
+     * Applies a format code. RESET clears the color, gradient and all formats.
+     */
+    void format(@Nonnull ChatFormat format) {
+        endRun();
+        if (degradation == Degradation.PLAIN) {
+            return;
+        }
+        switch (format) {
+            case BOLD -> style |= ParsedMessage.BOLD;
+            case ITALIC -> style |= ParsedMessage.ITALIC;
+            case UNDERLINE -> style |= ParsedMessage.UNDERLINE;
+            case MONOSPACE -> style |= ParsedMessage.MONOSPACE;
+            case RESET -> {
+                color = ParsedMessage.NO_COLOR;
+                span = null;
+                style = 0;
+            }
+        }
+    }
+
+    /**
+     * Adds style bits (ParsedMessage.BOLD etc.) to the following text.
+     */
+    void addStyle(int bits) {
+        endRun();
+        if (degradation != Degradation.PLAIN) {
+            style |= bits;
+        }
+    }
+
+    /**
+     * Makes the following text clickable, or plain again for null.
+     */
+    void link(@Nullable String url) {
+        endRun();
+        if (degradation != Degradation.PLAIN) {
+            link = url;
+            if (url != null) {
+                linkCount++;
+            }
+        }
+    }
+
+    /**
+     * Appends one visible character in the current style.
+     */
+    void append(char c) {
+        pending.append(c);
+        if (senderText != null) {
+            senderText.append(c);
+        }
+        if (fingerprinting) {
+            fold(c);
+        }
+        if (matcher != null) {
+            matcher.next(pending.length() - 1);
+        }
+    }
+
+    /**
+     * Appends visible text in the current style.
+     */
+    void append(@Nonnull CharSequence text, int from, int to) {
+        int start = pending.length();
+        pending.append(text, from, to);
+        if (senderText != null) {
+            senderText.append(text, from, to);
+        }
+        if (fingerprinting) {
+            for (int i = from; i < to; i++) {
+                fold(text.charAt(i));
+            }
+        }
+        if (matcher != null) {
+            for (int i = start; i < pending.length(); i++) {
+                matcher.next(i);
+            }
+        }
+    }
+
+    /**
+     * Appends clickable text in the current style as its own run.
+     */
+    void link(@Nonnull String url, @Nonnull CharSequence text) {
+        String previous = link;
+        link(url);
+        append(text, 0, text.length());
+        endRun();
+        link = previous;
+    }
+
+    /**
+     * Starts hashing the visible text appended from now on.
+     */
+    void startFingerprint() {
+        fingerprinting = true;
+        fingerprint = 0xcbf29ce484222325L;
+        fingerprinted = 0;
+    }
+
+    /**
+     * Stops hashing and returns the hash of the case-folded letters and digits
+     * appended since {@link #startFingerprint()}, or 0 if there were none.
+     */
+    long endFingerprint() {
+        fingerprinting = false;
+        return fingerprinted > 0 ? fingerprint : 0;
+    }
+
+    /**
+     * Starts masking the filter's words in the visible text appended from now on.
+     * Runs are held back until flush, so a match can be masked across style changes.
+     */
+    void startFilter(@Nonnull WordFilter filter) {
+        matcher = new WordFilter.Matcher(filter, pending, pending.length());
+    }
+
+    /**
+     * Stops masking, settling a match that ends right at the end.
+     */
+    void endFilter() {
+        if (matcher != null) {
+            matcher.finish();
+            matcher = null;
+        }
+    }
+
+    private void fold(char c) {
+        if (Character.isLetterOrDigit(c)) {
+            fingerprint = (fingerprint ^ Character.toLowerCase(c)) * 0x100000001b3L;
+            fingerprinted++;
+        }
+    }
+
+    /**
+     * Gets the number of links written so far.
+     */
+    int getLinkCount() {
+        return linkCount;
+    }
+
+    /**
+     * Counts links written before this writer took over, e.g. when resuming a parse.
+     */
+    void addLinkCount(int links) {
+        linkCount += links;
+    }
+
+    /**
+     * Gets the number of characters written since the last flush.
+     */
+    int length() {
+        return pending.length();
+    }
+
+    /**
+     * Whether nothing has been written in the current style yet and no gradient
+     * is partway through, so everything written so far is final.
+     */
+    boolean isSettled() {
+        return pending.length() == runStart && (span == null || span.length == 0);
+    }
+
+    /**
+     * Captures the current color, gradient, formats and link.
+     */
+    @Nonnull
+    Saved save() {
+        return new Saved(color, span, style, link);
+    }
+
+    /**
+     * Returns to a previously captured style, ending the pending run.
+     * A restored gradient picks up where it left off, unless it was already flushed.
+     */
+    void restore(@Nonnull Saved saved) {
+        endRun();
+        color = saved.color;
+        span = saved.span == null || !saved.span.isFrozen() ? saved.span : saved.span.restart();
+        style = saved.style;
+        link = saved.link;
+    }
+
+    /**
+     * Writes all held-back runs to the buffer. A gradient still active afterwards
+     * starts over, since the written part's length is now fixed.
+     */
+    void flush() {
+        endRun();
+        for (int r = 0, start = 0; r < runCount; start = runEnds[r], r++) {
+            Span runSpan = runSpans[r];
+            if (runSpan != null) {
+                segments.appendGradient(pending, start, runEnds[r], runSpan.spec(), runOffsets[r], runStyles[r],
+                        runLinks[r]);
+            } else {
+                segments.append(pending, start, runEnds[r], runColors[r], runStyles[r], runLinks[r]);
+            }
+        }
+        Arrays.fill(runLinks, 0, runCount, null);
+        Arrays.fill(runSpans, 0, runCount, null);
+        runCount = 0;
+        pending.setLength(0);
+        runStart = 0;
+        if (span != null && span.isFrozen()) {
+            span = span.restart();
+        }
+    }
+
+    /**
+     * Ends the current run, merging it into the previous one when nothing changed in between.
+     */
+    private void endRun() {
+        int end = pending.length();
+        int length = end - runStart;
+        if (length == 0) {
+            return;
+        }
+        int last = runCount - 1;
+        if (last >= 0 && runSpans[last] == span && runStyles[last] == style && runLinks[last] == link
+                && (span != null || runColors[last] == color)) {
+            runEnds[last] = end;
+        } else {
+            if (runCount == runEnds.length) {
+                grow();
+            }
+            runEnds[runCount] = end;
+            runColors[runCount] = color;
+            runStyles[runCount] = (byte) style;
+            runLinks[runCount] = link;
+            runSpans[runCount] = span;
+            runOffsets[runCount] = span != null ? span.length : 0;
+            runCount++;
+        }
+        runStart = end;
+        if (span != null) {
+            span.add(pending, end - length, end);
+        }
+    }
+
+    private void grow() {
+        int capacity = runEnds.length * 2;
+        runEnds = Arrays.copyOf(runEnds, capacity);
+        runColors = Arrays.copyOf(runColors, capacity);
+        runStyles = Arrays.copyOf(runStyles, capacity);
+        runLinks = Arrays.copyOf(runLinks, capacity);
+        runSpans = Arrays.copyOf(runSpans, capacity);
+        runOffsets = Arrays.copyOf(runOffsets, capacity);
+    }
+
+    /**
+     * A gradient over all text written while it was active. Its spec is
+     * created once, at flush, when the full length is known.
+     */
+    private static final class Span {
+        final List<Color> stops;
+        final Interpolation mode;
+        // Chars written so far
+        int length;
+        // Units (code points or clusters) written so far, and the unit of each char once any text was not ASCII
+        private int unitCount;
+        private int[] units;
+        private GradientSpec spec;
+
+        Span(List<Color> stops, Interpolation mode) {
+            this.stops = stops;
+            this.mode = mode;
+        }
+
+        GradientSpec spec() {
+            if (spec == null) {
+                spec = units == null ? new GradientSpec(stops, mode, length)
+                        : new GradientSpec(stops, mode, length, Arrays.copyOf(units, length), unitCount);
+            }
+            return spec;
+        }
+
+        /**
+         * Adds text to the span. ASCII text is one unit per char without looking further.
+         */
+        void add(CharSequence text, int from, int to) {
+            int count = to - from;
+            if (units == null && isAscii(text, from, to)) {
+                length += count;
+                unitCount += count;
+                return;
+            }
+            if (units == null) {
+                units = new int[Math.max(16, (length + count) * 2)];
+                for (int i = 0; i < length; i++) {
+                    units[i] = i;
+                }
+            } else if (length + count > units.length) {
+                units = Arrays.copyOf(units, Math.max(units.length * 2, length + count));
+            }
+
+            SimpleColorConfig config = SimpleColor.getConfig();
+            if (config != null && config.isGradientGraphemeClusters()) {
+                BreakIterator clusters = BreakIterator.getCharacterInstance();
+                clusters.setText(text.subSequence(from, to).toString());
+                for (int start = 0, end = clusters.next(); end != BreakIterator.DONE; start = end, end = clusters.next()) {
+                    Arrays.fill(units, length + start, length + end, unitCount++);
+                }
+            } else {
+                for (int i = from; i < to; ) {
+                    int chars = Math.min(Character.charCount(Character.codePointAt(text, i)), to - i);
+                    Arrays.fill(units, length + i - from, length + i - from + chars, unitCount++);
+                    i += chars;
+                }
+            }
+            length += count;
+        }
+
+        private static boolean isAscii(CharSequence text, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (text.charAt(i) >= 0x80) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean isFrozen() {
+            return spec != null;
+        }
+
+        Span restart() {
+            return new Span(stops, mode);
+        }
+    }
+
+    /**
+     * Snapshot of the writer's style.
+     */
+    static final class Saved {
+        final int color;
+        final Span span;
+        final int style;
+        final String link;
+
+        Saved(int color, Span span, int style, String link) {
+            this.color = color;
+            this.span = span;
+            this.style = style;
+            this.link = link;
+        }
+
+        /**
+         * Whether text written after either snapshot would come out the same.
+         * Gradient spans compare by their stops and mode, not identity.
+         */
+        boolean sameStyle(@Nonnull Saved other) {
+            if (color != other.color || style != other.style || !Objects.equals(link, other.link)) {
+                return false;
+            }
+            if (span == null || other.span == null) {
+                return span == other.span;
+            }
+            return span.stops.equals(other.span.stops) && span.mode == other.span.mode;
+        }
+    }
+}
@@ -5,10 +5,16 @@ import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.event.events.player.PlayerChatEvent;
 import com.hypixel.hytale.server.core.plugin.JavaPlugin;
 import com.hypixel.hytale.server.core.plugin.JavaPluginInit;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import org.slamstudios.simplecolor.enums.Degradation;
 import org.slamstudios.simplecolor.listeners.ChatListener;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 
 /**
@@ -35,8 +41,20 @@ import java.util.logging.Level;
  */
 public class SimpleColor extends JavaPlugin {
 
-    private static SimpleColor instance;
-    private static SimpleColorConfig config;
+    // Read from chat and worker threads; a reload swaps in a fully loaded config
+    private static volatile SimpleColor instance;
+    private static volatile SimpleColorConfig config;
+    private static volatile MessageCatalog messages;
+
+    // Highlights the viewer's own name when enabled in config, otherwise renders as parsed
+    private static final ViewerProfileResolver DEFAULT_RESOLVER = viewer -> {
+        SimpleColorConfig current = config;
+        if (current != null && current.isHighlightMentions()) {
+            return ViewerProfile.DEFAULT.withHighlight(viewer.getUsername());
+        }
+        return ViewerProfile.DEFAULT;
+    };
+    private static volatile ViewerProfileResolver viewerProfileResolver = DEFAULT_RESOLVER;
 
     public SimpleColor(@Nonnull JavaPluginInit init) {
         super(init);
@@ -49,10 +67,17 @@ public class SimpleColor extends JavaPlugin {
 
         // Load config
         Path configPath = getDataDirectory().resolve("config.json");
-        config = SimpleColorConfig.load(configPath);
-        config.save(configPath); // Save to create file with defaults if not exists
+        SimpleColorConfig loaded = SimpleColorConfig.load(configPath);
+        loaded.saveAsync(); // Create file with defaults if not exists, skipped when unchanged
+        messages = new MessageCatalog(getDataDirectory().resolve("messages"), loaded.getDefaultLocale());
+        applyConfig(loaded);
+        config = loaded;
 
         registerListeners();
+
+        if (config.isWarmupEnabled()) {
+            Warmup.start(this);
+        }
     }
 
     @Override
@@ -68,32 +93,88 @@ public class SimpleColor extends JavaPlugin {
     @Override
     protected void shutdown() {
         getLogger().at(Level.INFO).log("SimpleColor shutting down...");
-        // Save config on shutdown
+        // Queue a final save; the writer thread finishes it without blocking shutdown
         if (config != null) {
-            config.save(getDataDirectory().resolve("config.json"));
+            config.saveAsync();
         }
+        ConfigWriter.shutdown();
+        Broadcaster.shutdown();
+        ChatAuditLog.shutdown();
+        ParseBudget.clear();
+        SpamDetector.clear();
         instance = null;
         config = null;
+        messages = null;
     }
 
     public static SimpleColor getInstance() {
         return instance;
     }
 
-    @Nonnull
+    /**
+     * Gets the current config; null before setup and after shutdown.
+     * Read it once into a local, a reload may replace it at any time.
+     */
+    @Nullable
     public static SimpleColorConfig getConfig() {
         return config;
     }
 
     /**
-     * Reloads the configuration from disk.
+     * Gets the localized message catalog, read from the messages folder in the data directory;
+     * null before setup and after shutdown.
+     */
+    @Nullable
+    public static MessageCatalog getMessages() {
+        return messages;
+    }
+
+    /**
+     * Reloads the configuration and message catalog from disk.
      */
     public void reloadConfig() {
         Path configPath = getDataDirectory().resolve("config.json");
-        config = SimpleColorConfig.load(configPath);
+        // Fully loaded and applied before it is published; chat keeps using the old one until then
+        SimpleColorConfig loaded = SimpleColorConfig.load(configPath);
+        applyConfig(loaded);
+        messages.reload(loaded.getDefaultLocale());
+        config = loaded;
+        // Budgets and spam limits may have changed; start everyone from a clean window
+        ParseBudget.clear();
+        SpamDetector.clear();
         getLogger().at(Level.INFO).log("SimpleColor config reloaded.");
     }
 
+    /**
+     * Pushes config values into the registries that cache them, before the config
+     * itself is published. The word filter is built on its own thread and swapped
+     * in when ready.
+     */
+    private void applyConfig(@Nonnull SimpleColorConfig config) {
+        LinkPolicy.configure(config.getLinkAllowList(), config.getLinkDenyList());
+        ChatAuditLog.configure(getDataDirectory().resolve("audit"), config);
+        WordFilter.rebuild(config);
+        for (String name : ColorRegistry.setCustomColors(config.getCustomColors())) {
+            getLogger().at(Level.WARNING).log("Ignoring custom color '" + name + "': names are letters and underscores,"
+                    + " values are hex codes, and legacy color names cannot be replaced");
+        }
+    }
+
+    /**
+     * Uses a config without a running plugin, e.g. in the load simulator.
+     * Applies everything that does not need the data directory. Null drops
+     * the config as shutdown does.
+     */
+    static void useConfig(@Nullable SimpleColorConfig config) {
+        if (config != null) {
+            LinkPolicy.configure(config.getLinkAllowList(), config.getLinkDenyList());
+            WordFilter.rebuild(config);
+            ColorRegistry.setCustomColors(config.getCustomColors());
+        }
+        // Published last, so whoever sees the new config also sees what it configured
+        SimpleColor.config = config;
+    }
+
     @Nonnull
     public static Message parse(@Nonnull String input) {
         return ColorParser.parse(input);
@@ -104,11 +185,107 @@ public class SimpleColor extends JavaPlugin {
         return ColorParser.parse(input, player);
     }
 
+    /**
+     * Parses into a lazy handle; the Message is only built when first requested.
+     */
+    @Nonnull
+    public static ParsedMessage parseLazy(@Nonnull String input) {
+        return ColorParser.parseSegments(input);
+    }
+
+    /**
+     * Parses into a lazy handle, checking the player's permissions.
+     */
+    @Nonnull
+    public static ParsedMessage parseLazy(@Nonnull String input, @Nonnull Player player) {
+        return ColorParser.parseSegments(input, player);
+    }
+
+    /**
+     * Parses scoped tag markup, e.g. {@code <gradient:red:blue>Hi <bold>there</bold></gradient>}.
+     * Compiled markup is cached; see {@link Markup} for the tags.
+     * This method does not check permissions.
+     */
+    @Nonnull
+    public static Message parseMarkup(@Nonnull String markup) {
+        return Markup.shared(markup).toMessage();
+    }
+
     @Nonnull
     public static String strip(@Nonnull String input) {
         return ColorParser.stripAll(input);
     }
 
+    /**
+     * Parses a message once and sends it to every recipient, rendered for each
+     * one's viewer profile. Large broadcasts are rendered and sent on a thread pool.
+     *
+     * @param input the message with color codes
+     * @param recipients the players to send to
+     * @return completes once every recipient was sent the message
+     */
+    @Nonnull
+    public static CompletableFuture<Void> broadcast(@Nonnull String input, @Nonnull Collection<PlayerRef> recipients) {
+        return broadcast(ColorParser.parseSegments(input), recipients);
+    }
+
+    /**
+     * Sends an already parsed message to every recipient, rendered for each one's viewer profile.
+     */
+    @Nonnull
+    public static CompletableFuture<Void> broadcast(@Nonnull ParsedMessage message,
+                                                    @Nonnull Collection<PlayerRef> recipients) {
+        return Broadcaster.broadcast(message, recipients, viewerProfileResolver);
+    }
+
+    /**
+     * Gets how a player's messages are currently degraded for exceeding their parse budget.
+     */
+    @Nonnull
+    public static Degradation getDegradation(@Nonnull UUID player) {
+        return ParseBudget.degradationFor(player);
+    }
+
+    /**
+     * Registers a {key} placeholder, replacing any with the same key.
+     * Built in: {player} (the sender's name). Chat also binds {message}.
+     */
+    public static void registerPlaceholder(@Nonnull Placeholder placeholder) {
+        PlaceholderContext.register(placeholder);
+    }
+
+    /**
+     * Removes a registered placeholder.
+     */
+    public static void unregisterPlaceholder(@Nonnull String key) {
+        PlaceholderContext.unregister(key);
+    }
+
+    /**
+     * Starts a fluent message builder, e.g.
+     * {@code SimpleColor.builder().color(ChatColor.RED).text("Hi").build()}.
+     */
+    @Nonnull
+    public static MessageBuilder builder() {
+        return new MessageBuilder();
+    }
+
+    /**
+     * Gets the resolver deciding how each chat recipient sees messages.
+     */
+    @Nonnull
+    public static ViewerProfileResolver getViewerProfileResolver() {
+        return viewerProfileResolver;
+    }
+
+    /**
+     * Sets the resolver deciding how each chat recipient sees messages.
+     * Pass null to restore the default.
+     */
+    public static void setViewerProfileResolver(@Nullable ViewerProfileResolver resolver) {
+        viewerProfileResolver = resolver != null ? resolver : DEFAULT_RESOLVER;
+    }
+
     public void registerListeners() {
         this.getEventRegistry().registerGlobal(PlayerChatEvent.class, ChatListener::onPlayerChat);
     }
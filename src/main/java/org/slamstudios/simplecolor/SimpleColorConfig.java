@@ -2,11 +2,19 @@ package org.slamstudios.simplecolor;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
 
 /**
  * Configuration for SimpleColor plugin.
@@ -17,6 +25,40 @@ public class SimpleColorConfig {
 
     private boolean chatParsingEnabled = true;
     private String chatFormat = "{player}: {message}";
+    private boolean highlightMentions = false;
+    private int broadcastParallelism = 0;
+    private int broadcastMaxPending = 16;
+    private long parseBudgetNanos = 50_000_000L;
+    private int parseBudgetSegments = 5000;
+    private int parseBudgetWindowSeconds = 10;
+    private Map<String, String> customColors = new LinkedHashMap<>();
+    private boolean warmupEnabled = true;
+    private int maxLinksPerMessage = 3;
+    private List<String> linkAllowList = new ArrayList<>();
+    private List<String> linkDenyList = new ArrayList<>();
+    private String defaultLocale = "en_us";
+    private boolean auditLogEnabled = false;
+    private int auditBufferSize = 8192;
+    private boolean auditBlockWhenFull = false;
+    private long auditFlushMillis = 1000;
+    private int auditMaxFileMegabytes = 16;
+    private boolean spamDetectionEnabled = false;
+    private int spamWindowSeconds = 30;
+    private int spamMaxRepeats = 2;
+    private int spamGlobalMaxRepeats = 0;
+    private String spamMessage = "&cPlease don't repeat the same message.";
+    private boolean wordFilterEnabled = false;
+    private List<String> filterWords = new ArrayList<>();
+    private String filterMask = "*";
+    private boolean filterWholeWords = true;
+    private boolean gradientGraphemeClusters = false;
+
+    // Where this config was loaded from; setters persist back to it
+    private transient volatile Path path;
+    // Last content known to be on disk, used to skip redundant writes
+    private transient volatile String lastWritten;
+    // Set while an async save is queued but has not started serializing yet
+    private final transient AtomicBoolean saveQueued = new AtomicBoolean();
 
     public SimpleColorConfig() {}
 
@@ -32,6 +74,7 @@ public class SimpleColorConfig {
      */
     public void setChatParsingEnabled(boolean enabled) {
         this.chatParsingEnabled = enabled;
+        saveAsync();
     }
 
     /**
@@ -49,6 +92,434 @@ public class SimpleColorConfig {
      */
     public void setChatFormat(@Nonnull String format) {
         this.chatFormat = format;
+        saveAsync();
+    }
+
+    /**
+     * Whether a recipient's own name is highlighted when it appears in chat.
+     */
+    public boolean isHighlightMentions() {
+        return highlightMentions;
+    }
+
+    /**
+     * Sets whether a recipient's own name is highlighted in chat.
+     */
+    public void setHighlightMentions(boolean highlightMentions) {
+        this.highlightMentions = highlightMentions;
+        saveAsync();
+    }
+
+    /**
+     * Gets the number of threads used for large broadcasts. 0 means one less than the CPU count.
+     * A change starts a new pool on the next large broadcast.
+     */
+    public int getBroadcastParallelism() {
+        return broadcastParallelism;
+    }
+
+    /**
+     * Sets the number of threads used for large broadcasts.
+     */
+    public void setBroadcastParallelism(int broadcastParallelism) {
+        this.broadcastParallelism = broadcastParallelism;
+        saveAsync();
+    }
+
+    /**
+     * Gets how many broadcasts may be in flight on the pool before callers deliver their own.
+     */
+    public int getBroadcastMaxPending() {
+        return broadcastMaxPending;
+    }
+
+    /**
+     * Sets how many broadcasts may be in flight on the pool.
+     */
+    public void setBroadcastMaxPending(int broadcastMaxPending) {
+        this.broadcastMaxPending = broadcastMaxPending;
+        saveAsync();
+    }
+
+    /**
+     * Gets how many nanoseconds of parsing a player may use per window before
+     * their messages are degraded. 0 disables the time budget.
+     */
+    public long getParseBudgetNanos() {
+        return parseBudgetNanos;
+    }
+
+    /**
+     * Sets the per-player parse time budget in nanoseconds.
+     */
+    public void setParseBudgetNanos(long parseBudgetNanos) {
+        this.parseBudgetNanos = parseBudgetNanos;
+        saveAsync();
+    }
+
+    /**
+     * Gets how many segments a player's messages may produce per window before
+     * they are degraded. 0 disables the segment budget.
+     */
+    public int getParseBudgetSegments() {
+        return parseBudgetSegments;
+    }
+
+    /**
+     * Sets the per-player segment budget.
+     */
+    public void setParseBudgetSegments(int parseBudgetSegments) {
+        this.parseBudgetSegments = parseBudgetSegments;
+        saveAsync();
+    }
+
+    /**
+     * Gets the length of the sliding window the parse budget applies to, in seconds.
+     */
+    public int getParseBudgetWindowSeconds() {
+        return parseBudgetWindowSeconds;
+    }
+
+    /**
+     * Sets the length of the parse budget window in seconds.
+     */
+    public void setParseBudgetWindowSeconds(int parseBudgetWindowSeconds) {
+        this.parseBudgetWindowSeconds = parseBudgetWindowSeconds;
+        saveAsync();
+    }
+
+    /**
+     * Gets the custom named colors (e.g. brand colors), as name to hex code.
+     * They can be used anywhere a color name is accepted, e.g. &#brand:gold.
+     */
+    @Nonnull
+    public Map<String, String> getCustomColors() {
+        return customColors != null ? customColors : Map.of();
+    }
+
+    /**
+     * Sets the custom named colors. Applied when the config is loaded or reloaded.
+     */
+    public void setCustomColors(@Nonnull Map<String, String> customColors) {
+        this.customColors = new LinkedHashMap<>(customColors);
+        saveAsync();
+    }
+
+    /**
+     * Whether the parser is warmed up on a background thread at startup,
+     * so the first chat messages are not slowed down by class loading and JIT.
+     */
+    public boolean isWarmupEnabled() {
+        return warmupEnabled;
+    }
+
+    /**
+     * Sets whether the parser is warmed up at startup.
+     */
+    public void setWarmupEnabled(boolean warmupEnabled) {
+        this.warmupEnabled = warmupEnabled;
+        saveAsync();
+    }
+
+    /**
+     * Gets how many links one message may contain; further links show as plain text. 0 means no limit.
+     */
+    public int getMaxLinksPerMessage() {
+        return maxLinksPerMessage;
+    }
+
+    /**
+     * Sets how many links one message may contain.
+     */
+    public void setMaxLinksPerMessage(int maxLinksPerMessage) {
+        this.maxLinksPerMessage = maxLinksPerMessage;
+        saveAsync();
+    }
+
+    /**
+     * Gets the hosts links may point to, subdomains included. Empty allows every host not denied.
+     */
+    @Nonnull
+    public List<String> getLinkAllowList() {
+        return linkAllowList != null ? linkAllowList : List.of();
+    }
+
+    /**
+     * Sets the hosts links may point to. Applied when the config is loaded or reloaded.
+     */
+    public void setLinkAllowList(@Nonnull List<String> hosts) {
+        this.linkAllowList = new ArrayList<>(hosts);
+        saveAsync();
+    }
+
+    /**
+     * Gets the hosts links may never point to, subdomains included.
+     */
+    @Nonnull
+    public List<String> getLinkDenyList() {
+        return linkDenyList != null ? linkDenyList : List.of();
+    }
+
+    /**
+     * Sets the hosts links may never point to. Applied when the config is loaded or reloaded.
+     */
+    public void setLinkDenyList(@Nonnull List<String> hosts) {
+        this.linkDenyList = new ArrayList<>(hosts);
+        saveAsync();
+    }
+
+    /**
+     * Gets the locale of the message catalog used when a key is missing from a player's locale.
+     */
+    @Nonnull
+    public String getDefaultLocale() {
+        return defaultLocale != null ? defaultLocale : "en_us";
+    }
+
+    /**
+     * Sets the default message locale. Takes effect on the next reload.
+     */
+    public void setDefaultLocale(@Nonnull String defaultLocale) {
+        this.defaultLocale = defaultLocale;
+        saveAsync();
+    }
+
+    /**
+     * Whether chat lines are written to the audit log in the audit folder of the data directory.
+     */
+    public boolean isAuditLogEnabled() {
+        return auditLogEnabled;
+    }
+
+    /**
+     * Sets whether chat lines are written to the audit log. Takes effect on the next reload.
+     */
+    public void setAuditLogEnabled(boolean auditLogEnabled) {
+        this.auditLogEnabled = auditLogEnabled;
+        saveAsync();
+    }
+
+    /**
+     * Gets how many chat lines may wait for the audit writer, rounded up to a power of two.
+     */
+    public int getAuditBufferSize() {
+        return auditBufferSize;
+    }
+
+    /**
+     * Sets how many chat lines may wait for the audit writer.
+     */
+    public void setAuditBufferSize(int auditBufferSize) {
+        this.auditBufferSize = auditBufferSize;
+        saveAsync();
+    }
+
+    /**
+     * Whether chat waits for room when the audit buffer is full, instead of
+     * dropping the line. Waits are capped at one second.
+     */
+    public boolean isAuditBlockWhenFull() {
+        return auditBlockWhenFull;
+    }
+
+    /**
+     * Sets whether chat waits for room when the audit buffer is full.
+     */
+    public void setAuditBlockWhenFull(boolean auditBlockWhenFull) {
+        this.auditBlockWhenFull = auditBlockWhenFull;
+        saveAsync();
+    }
+
+    /**
+     * Gets how often written audit lines are forced to disk, in milliseconds.
+     * 0 forces after every batch.
+     */
+    public long getAuditFlushMillis() {
+        return auditFlushMillis;
+    }
+
+    /**
+     * Sets how often written audit lines are forced to disk, in milliseconds.
+     */
+    public void setAuditFlushMillis(long auditFlushMillis) {
+        this.auditFlushMillis = auditFlushMillis;
+        saveAsync();
+    }
+
+    /**
+     * Gets the size at which an audit log file is rotated, in megabytes.
+     */
+    public int getAuditMaxFileMegabytes() {
+        return auditMaxFileMegabytes;
+    }
+
+    /**
+     * Sets the size at which an audit log file is rotated, in megabytes.
+     */
+    public void setAuditMaxFileMegabytes(int auditMaxFileMegabytes) {
+        this.auditMaxFileMegabytes = auditMaxFileMegabytes;
+        saveAsync();
+    }
+
+    /**
+     * Whether repeated chat messages are blocked. Messages differing only in
+     * colors, formats, case, spacing or punctuation count as repeats.
+     */
+    public boolean isSpamDetectionEnabled() {
+        return spamDetectionEnabled;
+    }
+
+    /**
+     * Sets whether repeated chat messages are blocked.
+     */
+    public void setSpamDetectionEnabled(boolean spamDetectionEnabled) {
+        this.spamDetectionEnabled = spamDetectionEnabled;
+        saveAsync();
+    }
+
+    /**
+     * Gets how long a message counts as recent for spam detection, in seconds.
+     */
+    public int getSpamWindowSeconds() {
+        return spamWindowSeconds;
+    }
+
+    /**
+     * Sets how long a message counts as recent for spam detection, in seconds.
+     */
+    public void setSpamWindowSeconds(int spamWindowSeconds) {
+        this.spamWindowSeconds = spamWindowSeconds;
+        saveAsync();
+    }
+
+    /**
+     * Gets how many repeats of a recent message a player may send before
+     * further ones are blocked. 0 disables the per-player check.
+     */
+    public int getSpamMaxRepeats() {
+        return spamMaxRepeats;
+    }
+
+    /**
+     * Sets how many repeats of a recent message a player may send.
+     */
+    public void setSpamMaxRepeats(int spamMaxRepeats) {
+        this.spamMaxRepeats = spamMaxRepeats;
+        saveAsync();
+    }
+
+    /**
+     * Gets how often a recent message may be sent by all players together
+     * before further copies are blocked. 0, the default, disables the global
+     * check; short replies like "gg" are often sent by many players at once.
+     */
+    public int getSpamGlobalMaxRepeats() {
+        return spamGlobalMaxRepeats;
+    }
+
+    /**
+     * Sets how often a recent message may be sent by all players together.
+     */
+    public void setSpamGlobalMaxRepeats(int spamGlobalMaxRepeats) {
+        this.spamGlobalMaxRepeats = spamGlobalMaxRepeats;
+        saveAsync();
+    }
+
+    /**
+     * Gets the message sent to a player whose message was blocked as spam. Empty sends nothing.
+     */
+    @Nonnull
+    public String getSpamMessage() {
+        return spamMessage != null ? spamMessage : "";
+    }
+
+    /**
+     * Sets the message sent to a player whose message was blocked as spam.
+     */
+    public void setSpamMessage(@Nonnull String spamMessage) {
+        this.spamMessage = spamMessage;
+        saveAsync();
+    }
+
+    /**
+     * Whether filtered words in chat messages are masked.
+     */
+    public boolean isWordFilterEnabled() {
+        return wordFilterEnabled;
+    }
+
+    /**
+     * Sets whether filtered words in chat messages are masked.
+     * Applied when the config is loaded or reloaded.
+     */
+    public void setWordFilterEnabled(boolean wordFilterEnabled) {
+        this.wordFilterEnabled = wordFilterEnabled;
+        saveAsync();
+    }
+
+    /**
+     * Gets the words masked in chat messages, matched ignoring case.
+     */
+    @Nonnull
+    public List<String> getFilterWords() {
+        return filterWords != null ? filterWords : List.of();
+    }
+
+    /**
+     * Sets the words masked in chat messages. Applied when the config is loaded or reloaded.
+     */
+    public void setFilterWords(@Nonnull List<String> words) {
+        this.filterWords = new ArrayList<>(words);
+        saveAsync();
+    }
+
+    /**
+     * Gets the character each character of a filtered word is replaced with.
+     */
+    @Nonnull
+    public String getFilterMask() {
+        return filterMask != null ? filterMask : "*";
+    }
+
+    /**
+     * Sets the character each character of a filtered word is replaced with.
+     * Applied when the config is loaded or reloaded.
+     */
+    public void setFilterMask(@Nonnull String mask) {
+        this.filterMask = mask;
+        saveAsync();
+    }
+
+    /**
+     * Whether filtered words only match as whole words, so "class" is not masked for "ass".
+     */
+    public boolean isFilterWholeWords() {
+        return filterWholeWords;
+    }
+
+    /**
+     * Sets whether filtered words only match as whole words.
+     * Applied when the config is loaded or reloaded.
+     */
+    public void setFilterWholeWords(boolean filterWholeWords) {
+        this.filterWholeWords = filterWholeWords;
+        saveAsync();
+    }
+
+    /**
+     * Whether gradients step once per grapheme cluster (e.g. an emoji with a skin tone)
+     * instead of once per code point. Only affects text that is not plain ASCII.
+     */
+    public boolean isGradientGraphemeClusters() {
+        return gradientGraphemeClusters;
+    }
+
+    /**
+     * Sets whether gradients step once per grapheme cluster instead of once per code point.
+     */
+    public void setGradientGraphemeClusters(boolean gradientGraphemeClusters) {
+        this.gradientGraphemeClusters = gradientGraphemeClusters;
+        saveAsync();
     }
 
     /**
@@ -56,27 +527,72 @@ public class SimpleColorConfig {
      */
     @Nonnull
     public static SimpleColorConfig load(@Nonnull Path configPath) {
+        SimpleColorConfig config = null;
+        String json = null;
         if (Files.exists(configPath)) {
             try {
-                String json = Files.readString(configPath);
-                SimpleColorConfig config = GSON.fromJson(json, SimpleColorConfig.class);
-                return config != null ? config : new SimpleColorConfig();
-            } catch (IOException e) {
-                return new SimpleColorConfig();
+                json = Files.readString(configPath);
+                config = GSON.fromJson(json, SimpleColorConfig.class);
+            } catch (IOException | JsonParseException e) {
+                logFailure("Failed to read config " + configPath + ", using defaults", e);
+                json = null;
             }
         }
-        return new SimpleColorConfig();
+        if (config == null) {
+            config = new SimpleColorConfig();
+        }
+        config.path = configPath;
+        config.lastWritten = json;
+        return config;
     }
 
     /**
-     * Saves config to a JSON file.
+     * Saves config to a JSON file on the calling thread.
+     * The write is skipped if the file already holds the same content.
      */
     public void save(@Nonnull Path configPath) {
+        String json = GSON.toJson(this);
+        if (configPath.equals(path) && json.equals(lastWritten)) {
+            return;
+        }
         try {
-            Files.createDirectories(configPath.getParent());
-            Files.writeString(configPath, GSON.toJson(this));
+            ConfigWriter.writeAtomically(configPath, json);
+            if (configPath.equals(path)) {
+                lastWritten = json;
+            }
         } catch (IOException e) {
-            // Log error if needed
+            logFailure("Failed to save config " + configPath, e);
+        }
+    }
+
+    /**
+     * Saves config to the file it was loaded from on a background thread.
+     * Several calls in a row collapse into a single write of the latest state.
+     */
+    public void saveAsync() {
+        Path target = path;
+        if (target == null || !saveQueued.compareAndSet(false, true)) {
+            return;
+        }
+        ConfigWriter.submit(() -> {
+            // Clear before serializing so changes made during the write queue another save
+            saveQueued.set(false);
+            save(target);
+        });
+    }
+
+    /**
+     * Gets the file this config was loaded from, if any.
+     */
+    @Nullable
+    public Path getPath() {
+        return path;
+    }
+
+    private static void logFailure(@Nonnull String message, @Nonnull Exception e) {
+        SimpleColor plugin = SimpleColor.getInstance();
+        if (plugin != null) {
+            plugin.getLogger().at(Level.WARNING).withCause(e).log(message);
         }
     }
 }
@@ -0,0 +1,178 @@
+package org.slamstudios.simplecolor;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Detects repeated chat messages by their fingerprint, see
+ * {@link PlaceholderContext#fingerprint(String)}. Messages that differ only
+ * in colors, formats, case, spacing or punctuation count as the same.
+ *
+ * Each player keeps a small ring of their recent fingerprints. If a global
+ * limit is set, fingerprints across all players are counted in a count-min
+ * sketch split into two half-window generations, so counts fade out after
+ * one to one and a half windows. A new half-window gets a fresh generation
+ * rather than clearing the old one, so every check is a small fixed amount
+ * of work; sketch counts may overestimate, and a generation being replaced
+ * may lose a concurrent update.
+ */
+public final class SpamDetector {
+
+    private SpamDetector() {}
+
+    // Recent fingerprints kept per player
+    private static final int HISTORY = 16;
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 8192;
+    private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L,
+            0xD6E8FEB86659FD93L};
+
+    // Idle histories are dropped every this many checks, on a background thread
+    private static final int SWEEP_INTERVAL = 1024;
+
+    private static final Map<UUID, History> HISTORIES = new ConcurrentHashMap<>();
+    private static final AtomicLong CHECKED = new AtomicLong();
+    private static final AtomicBoolean SWEEPING = new AtomicBoolean();
+
+    // Two generations of the global sketch, by half-window epoch parity
+    private static final AtomicReferenceArray<Generation> GENERATIONS = new AtomicReferenceArray<>(2);
+
+    /**
+     * Records a player's message and decides whether it is spam: the player
+     * sent it too often within the window, or everyone together did.
+     *
+     * @param player the sender
+     * @param fingerprint the message's fingerprint, 0 to skip the check
+     * @return whether the message should be blocked
+     */
+    public static boolean isSpam(@Nonnull UUID player, long fingerprint) {
+        SimpleColorConfig config = SimpleColor.getConfig();
+        if (fingerprint == 0 || config == null || !config.isSpamDetectionEnabled()) {
+            return false;
+        }
+        long now = System.nanoTime();
+        long window = TimeUnit.SECONDS.toNanos(Math.max(1, config.getSpamWindowSeconds()));
+
+        int repeats = HISTORIES.computeIfAbsent(player, k -> new History()).record(fingerprint, now, window);
+        // The global check is opt-in; when off, the sketch is not touched
+        int maxGlobal = config.getSpamGlobalMaxRepeats();
+        int global = maxGlobal > 0 ? countGlobal(fingerprint, Math.floorDiv(now, Math.max(1, window / 2))) : 0;
+
+        if (CHECKED.incrementAndGet() % SWEEP_INTERVAL == 0) {
+            sweep(now, window);
+        }
+
+        int maxRepeats = config.getSpamMaxRepeats();
+        return maxRepeats > 0 && repeats >= maxRepeats || maxGlobal > 0 && global >= maxGlobal;
+    }
+
+    /**
+     * Drops idle histories on a daemon thread, so chat never walks the whole map.
+     * Skipped while the previous sweep is still running.
+     */
+    private static void sweep(long now, long window) {
+        if (!SWEEPING.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                HISTORIES.values().removeIf(history -> history.isIdle(now, window));
+            } finally {
+                SWEEPING.set(false);
+            }
+        }, "SimpleColor-SpamSweep");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Forgets all recorded messages, e.g. after the limits were changed.
+     */
+    static void clear() {
+        HISTORIES.clear();
+        for (int g = 0; g < 2; g++) {
+            GENERATIONS.set(g, null);
+        }
+    }
+
+    /**
+     * Adds one to the fingerprint's global count and returns the count before it.
+     */
+    private static int countGlobal(long fingerprint, long epoch) {
+        int slot = (int) (epoch & 1);
+        Generation current = GENERATIONS.get(slot);
+        if (current == null || current.epoch < epoch) {
+            // A fresh generation replaces the one from two half-windows ago; a lost race uses the winner's
+            Generation fresh = new Generation(epoch);
+            Generation won = GENERATIONS.compareAndSet(slot, current, fresh) ? fresh : GENERATIONS.get(slot);
+            current = won != null ? won : fresh;
+        }
+        Generation other = GENERATIONS.get(slot ^ 1);
+        AtomicIntegerArray previous = other != null && other.epoch == epoch - 1 ? other.counts : null;
+
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = row * WIDTH + slot(fingerprint, row);
+            int count = current.counts.getAndIncrement(index) + (previous != null ? previous.get(index) : 0);
+            estimate = Math.min(estimate, count);
+        }
+        return estimate;
+    }
+
+    private static int slot(long fingerprint, int row) {
+        long hash = (fingerprint ^ SEEDS[row]) * 0xFF51AFD7ED558CCDL;
+        return (int) (hash >>> 40) & (WIDTH - 1);
+    }
+
+    /**
+     * The sketch counts of one half-window.
+     */
+    private static final class Generation {
+        final long epoch;
+        final AtomicIntegerArray counts = new AtomicIntegerArray(DEPTH * WIDTH);
+
+        Generation(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * One player's recent fingerprints and when they were sent.
+     */
+    private static final class History {
+        private final long[] fingerprints = new long[HISTORY];
+        private final long[] times = new long[HISTORY];
+        private int next;
+        private int size;
+
+        /**
+         * Adds a fingerprint and returns how often it was already seen within the window.
+         */
+        synchronized int record(long fingerprint, long now, long window) {
+            int repeats = 0;
+            for (int i = 0; i < size; i++) {
+                if (fingerprints[i] == fingerprint && now - times[i] < window) {
+                    repeats++;
+                }
+            }
+            fingerprints[next] = fingerprint;
+            times[next] = now;
+            next = (next + 1) % HISTORY;
+            size = Math.min(size + 1, HISTORY);
+            return repeats;
+        }
+
+        synchronized boolean isIdle(long now, long window) {
+            int last = (next + HISTORY - 1) % HISTORY;
+            return size == 0 || now - times[last] >= window;
+        }
+    }
+}
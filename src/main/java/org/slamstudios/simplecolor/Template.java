@@ -0,0 +1,264 @@
+package org.slamstudios.simplecolor;
+
+import org.slamstudios.simplecolor.enums.ChatColor;
+import org.slamstudios.simplecolor.enums.ChatFormat;
+import org.slamstudios.simplecolor.enums.Degradation;
+import org.slamstudios.simplecolor.enums.Interpolation;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+
+/**
+ * An &amp;-coded message with {key} placeholders, compiled once into a flat list
+ * of nodes. Rendering replays the nodes into the segment pipeline and only
+ * the placeholder values are handled per call, with the same rules as
+ * {@link ColorParser#parseSegments} without a player. Links are checked
+ * against the link policy when rendered.
+ */
+final class Template {
+
+    // Node kinds
+    private static final byte TEXT = 0;
+    private static final byte PLACEHOLDER = 1;
+    private static final byte COLOR = 2;
+    private static final byte FORMAT = 3;
+    private static final byte GRADIENT = 4;
+    private static final byte RAINBOW = 5;
+    private static final byte LINK = 6;
+
+    private final String source;
+
+    // Node arena: kind, source range (text, placeholder key or link text) and value
+    private final int count;
+    private final byte[] kinds;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] values;
+    // Placeholder keys, formats, gradient stops and modes, link URLs and texts; nodes reference them by index
+    private final Object[] constants;
+
+    private volatile ParsedMessage rendered;
+
+    private Template(String source, Compiler compiler) {
+        this.source = source;
+        this.count = compiler.count;
+        this.kinds = compiler.kinds;
+        this.starts = compiler.starts;
+        this.ends = compiler.ends;
+        this.values = compiler.values;
+        this.constants = compiler.constants.toArray();
+    }
+
+    /**
+     * Compiles an &amp;-coded message.
+     */
+    @Nonnull
+    static Template compile(@Nonnull String source) {
+        Compiler compiler = new Compiler(source);
+        compiler.run();
+        return new Template(source, compiler);
+    }
+
+    /**
+     * Renders with placeholder values, or with {key} left as written when the
+     * context is null; that result is cached after the first call.
+     */
+    @Nonnull
+    ParsedMessage render(@Nullable PlaceholderContext context) {
+        if (context == null) {
+            ParsedMessage result = rendered;
+            if (result == null) {
+                result = replay(null, Degradation.NONE);
+                rendered = result;
+            }
+            return result;
+        }
+        // Charged to the sender like a parse, so the budget sees catalog messages too
+        UUID account = context.getSender() != null ? context.getSender().getUuid() : null;
+        if (account == null) {
+            return replay(context, Degradation.NONE);
+        }
+        long start = System.nanoTime();
+        ParsedMessage result = replay(context, ParseBudget.degradationFor(account));
+        ParseBudget.record(account, System.nanoTime() - start, result.size);
+        return result;
+    }
+
+    private ParsedMessage replay(@Nullable PlaceholderContext context, Degradation degradation) {
+        SegmentBuffer segments = new SegmentBuffer(source.length());
+        SegmentWriter writer = new SegmentWriter(segments);
+        ColorParser.degrade(writer, context, degradation);
+        for (int i = 0; i < count; i++) {
+            int value = values[i];
+            switch (kinds[i]) {
+                case TEXT -> writer.append(source, starts[i], ends[i]);
+                case PLACEHOLDER -> {
+                    if (context == null || !ColorParser.appendPlaceholder((String) constants[value], writer, null, context)) {
+                        // Unknown keys stay as written, braces included
+                        writer.append(source, starts[i] - 1, ends[i] + 1);
+                    }
+                }
+                case COLOR -> writer.color(value);
+                case FORMAT -> writer.format((ChatFormat) constants[value]);
+                case RAINBOW -> writer.rainbow();
+                case GRADIENT -> {
+                    @SuppressWarnings("unchecked")
+                    List<Color> stops = (List<Color>) constants[value];
+                    writer.gradient(stops, (Interpolation) constants[value + 1]);
+                }
+                case LINK -> {
+                    // Disallowed or over the limit: keep the text, drop the link
+                    String url = ColorParser.withinLinkLimit(writer) ? LinkPolicy.check((String) constants[value]) : null;
+                    if (url != null) {
+                        writer.link(url, (String) constants[value + 1]);
+                    } else {
+                        writer.append(source, starts[i], ends[i]);
+                    }
+                }
+                default -> throw new IllegalStateException("Unknown node: " + kinds[i]);
+            }
+        }
+        writer.flush();
+        return segments.build();
+    }
+
+    /**
+     * Splits the source into nodes, recognizing codes the way {@link ColorParser#scan} does.
+     */
+    private static final class Compiler {
+        private final String source;
+
+        private int count;
+        private byte[] kinds = new byte[16];
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int[] values = new int[16];
+        private final List<Object> constants = new ArrayList<>();
+
+        // Start of the literal text not yet added as a node
+        private int textStart;
+
+        Compiler(String source) {
+            this.source = source;
+        }
+
+        void run() {
+            int i = 0;
+            while (i < source.length()) {
+                int next = node(i);
+                if (next < 0) {
+                    i++;
+                } else {
+                    i = next;
+                    textStart = next;
+                }
+            }
+            flushText(source.length());
+        }
+
+        /**
+         * Adds the placeholder or code at index, if there is one.
+         *
+         * @return the index after it, or -1 if the character is text
+         */
+        private int node(int i) {
+            char c = source.charAt(i);
+            if (c == '{') {
+                int end = ColorParser.placeholderEnd(source, i);
+                if (end > 0) {
+                    flushText(i);
+                    constants.add(source.substring(i + 1, end));
+                    add(PLACEHOLDER, i + 1, end, constants.size() - 1);
+                    return end + 1;
+                }
+                return -1;
+            }
+            if ((c != '&' && c != '§') || i + 1 >= source.length()) {
+                return -1;
+            }
+
+            char next = source.charAt(i + 1);
+            if (next == '(' && c == '&') {
+                int end = ColorParser.linkEnd(source, i);
+                if (end > 0) {
+                    flushText(i);
+                    int urlEnd = source.indexOf(')', i + 2);
+                    constants.add(source.substring(i + 2, urlEnd));
+                    constants.add(source.substring(urlEnd + 2, end));
+                    add(LINK, urlEnd + 2, end, constants.size() - 2);
+                    return end + 1;
+                }
+            }
+
+            if (next == '*') {
+                flushText(i);
+                add(RAINBOW, i, i + 2, 0);
+                return i + 2;
+            }
+
+            if (next == '#' && i + 2 < source.length()) {
+                Matcher matcher = ColorParser.matchGradient(source, i);
+                List<Color> stops = matcher != null ? ColorParser.gradientStops(source, matcher) : null;
+                if (stops != null) {
+                    flushText(i);
+                    constants.add(stops);
+                    constants.add(ColorParser.gradientMode(matcher));
+                    add(GRADIENT, i, matcher.end(), constants.size() - 2);
+                    return matcher.end();
+                }
+                // Simple hex color: &#RRGGBB (not a gradient)
+                if (i + 8 <= source.length()) {
+                    int rgb = ColorRegistry.parseHex(source, i + 2, i + 8);
+                    if (rgb != -1 && (i + 8 >= source.length() || source.charAt(i + 8) != ':')) {
+                        flushText(i);
+                        add(COLOR, i, i + 8, rgb);
+                        return i + 8;
+                    }
+                }
+            }
+
+            ChatColor color = ChatColor.getByCode(next);
+            if (color != null) {
+                flushText(i);
+                add(COLOR, i, i + 2, color.getColor().getRGB() & 0xFFFFFF);
+                return i + 2;
+            }
+
+            ChatFormat format = ChatFormat.getByCode(next);
+            if (format != null) {
+                flushText(i);
+                constants.add(format);
+                add(FORMAT, i, i + 2, constants.size() - 1);
+                return i + 2;
+            }
+            return -1;
+        }
+
+        private void flushText(int end) {
+            if (end > textStart) {
+                add(TEXT, textStart, end, 0);
+            }
+        }
+
+        private void add(byte kind, int start, int end, int value) {
+            if (count == kinds.length) {
+                int capacity = count * 2;
+                kinds = Arrays.copyOf(kinds, capacity);
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            kinds[count] = kind;
+            starts[count] = start;
+            ends[count] = end;
+            values[count] = value;
+            count++;
+        }
+    }
+}
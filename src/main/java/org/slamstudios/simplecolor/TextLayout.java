@@ -0,0 +1,225 @@
+package org.slamstudios.simplecolor;
+
+import org.slamstudios.simplecolor.enums.Alignment;
+import org.slamstudios.simplecolor.enums.GradientFit;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Width-aware operations on parsed messages: truncate, wrap and pad.
+ *
+ * Everything works on the segment form, so nothing is stripped or parsed
+ * again. Widths count visible code points.
+ */
+final class TextLayout {
+
+    private TextLayout() {}
+
+    /**
+     * Cuts a message to at most maxWidth visible characters, ending in the ellipsis if anything was cut.
+     */
+    @Nonnull
+    static ParsedMessage truncate(@Nonnull ParsedMessage message, int maxWidth, @Nonnull String ellipsis,
+                                  @Nonnull GradientFit fit) {
+        if (maxWidth < 0) {
+            throw new IllegalArgumentException("Width must not be negative");
+        }
+        String text = message.text;
+        if (message.getVisibleLength() <= maxWidth) {
+            return message;
+        }
+        int ellipsisWidth = ellipsis.codePointCount(0, ellipsis.length());
+        if (ellipsisWidth > maxWidth) {
+            ellipsis = ellipsis.substring(0, ellipsis.offsetByCodePoints(0, Math.max(0, maxWidth)));
+            ellipsisWidth = maxWidth;
+        }
+        int cut = text.offsetByCodePoints(0, Math.max(0, maxWidth - ellipsisWidth));
+
+        SegmentBuffer out = new SegmentBuffer(cut + ellipsis.length());
+        slice(message, 0, cut, fit, out);
+        if (ellipsis.isEmpty()) {
+            return out.build();
+        }
+
+        // The ellipsis continues the style of the last kept character
+        ParsedMessage kept = cut > 0 ? out.build() : message;
+        int at = cut > 0 ? cut - 1 : 0;
+        int segment = segmentAt(kept, at);
+        out.append(ellipsis, 0, ellipsis.length(), colorAt(kept, segment, at), kept.styles[segment], null);
+        return out.build();
+    }
+
+    /**
+     * Splits a message into lines of at most width visible characters,
+     * breaking at spaces where possible and at newlines always.
+     */
+    @Nonnull
+    static List<ParsedMessage> wrap(@Nonnull ParsedMessage message, int width, @Nonnull GradientFit fit) {
+        if (width < 1) {
+            throw new IllegalArgumentException("Width must be at least 1");
+        }
+        String text = message.text;
+        int length = text.length();
+        List<ParsedMessage> lines = new ArrayList<>();
+
+        int lineStart = 0;
+        int lineWidth = 0;
+        int lastSpace = -1;
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                lines.add(line(message, lineStart, i, fit));
+                lineStart = i + 1;
+                lineWidth = 0;
+                lastSpace = -1;
+                i++;
+                continue;
+            }
+            if (lineWidth == width) {
+                if (c == ' ') {
+                    // Break right here and drop the space
+                    lines.add(line(message, lineStart, i, fit));
+                    lineStart = i + 1;
+                    i++;
+                } else if (lastSpace > lineStart) {
+                    // Break at the last space and carry the partial word over
+                    lines.add(line(message, lineStart, lastSpace, fit));
+                    lineStart = lastSpace + 1;
+                    i = lineStart;
+                } else {
+                    // Word longer than the line: hard break
+                    lines.add(line(message, lineStart, i, fit));
+                    lineStart = i;
+                }
+                lineWidth = 0;
+                lastSpace = -1;
+                continue;
+            }
+            if (c == ' ') {
+                lastSpace = i;
+            }
+            i += Character.charCount(text.codePointAt(i));
+            lineWidth++;
+        }
+        if (lineStart < length || lines.isEmpty()) {
+            lines.add(line(message, lineStart, length, fit));
+        }
+        return lines;
+    }
+
+    /**
+     * Pads a message with unstyled spaces up to width visible characters.
+     */
+    @Nonnull
+    static ParsedMessage pad(@Nonnull ParsedMessage message, int width, @Nonnull Alignment alignment) {
+        int missing = width - message.getVisibleLength();
+        if (missing <= 0) {
+            return message;
+        }
+        int left = switch (alignment) {
+            case LEFT -> 0;
+            case CENTER -> missing / 2;
+            case RIGHT -> missing;
+        };
+        String spaces = " ".repeat(missing);
+
+        SegmentBuffer out = new SegmentBuffer(message.text.length() + missing);
+        out.append(spaces, 0, left, ParsedMessage.NO_COLOR, 0, null);
+        out.append(message);
+        out.append(spaces, 0, missing - left, ParsedMessage.NO_COLOR, 0, null);
+        return out.build();
+    }
+
+    private static ParsedMessage line(ParsedMessage message, int from, int to, GradientFit fit) {
+        SegmentBuffer out = new SegmentBuffer(to - from);
+        slice(message, from, to, fit, out);
+        return out.build();
+    }
+
+    /**
+     * Copies the characters in [from, to) with their styling.
+     */
+    static void slice(@Nonnull ParsedMessage message, int from, int to, @Nonnull GradientFit fit,
+                      @Nonnull SegmentBuffer out) {
+        if (from >= to) {
+            return;
+        }
+        int first = segmentAt(message, from);
+        int last = segmentAt(message, to - 1);
+
+        // For RECOMPUTE, shrink each gradient to the part of it inside the slice
+        Map<GradientSpec, int[]> spans = null;
+        if (fit == GradientFit.RECOMPUTE && message.gradients != null) {
+            spans = new HashMap<>();
+            for (int i = first; i <= last; i++) {
+                GradientSpec gradient = message.gradientAt(i);
+                if (gradient != null) {
+                    int start = Math.max(from, message.start(i));
+                    int end = Math.min(to, message.ends[i]);
+                    int lo = message.gradientOffset[i] + start - message.start(i);
+                    int hi = lo + end - start;
+                    int[] span = spans.get(gradient);
+                    if (span == null) {
+                        spans.put(gradient, new int[] {lo, hi});
+                    } else {
+                        span[0] = Math.min(span[0], lo);
+                        span[1] = Math.max(span[1], hi);
+                    }
+                }
+            }
+        }
+        Map<GradientSpec, GradientSpec> resized = spans != null ? new HashMap<>() : null;
+
+        for (int i = first; i <= last; i++) {
+            int segmentStart = message.start(i);
+            int start = Math.max(from, segmentStart);
+            int end = Math.min(to, message.ends[i]);
+            GradientSpec gradient = message.gradientAt(i);
+            if (gradient == null) {
+                out.append(message.text, start, end, message.colors[i], message.styles[i], message.linkAt(i));
+                continue;
+            }
+            int offset = message.gradientOffset[i] + start - segmentStart;
+            if (resized != null) {
+                int[] span = spans.get(gradient);
+                gradient = resized.computeIfAbsent(gradient,
+                        g -> g.slice(span[0], span[1]));
+                offset -= span[0];
+            }
+            out.appendGradient(message.text, start, end, gradient, offset, message.styles[i], message.linkAt(i));
+        }
+    }
+
+    /**
+     * Finds the segment containing a character offset.
+     */
+    private static int segmentAt(ParsedMessage message, int offset) {
+        int lo = 0;
+        int hi = message.size - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (message.ends[mid] <= offset) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Gets the solid color a character is rendered in.
+     */
+    private static int colorAt(ParsedMessage message, int segment, int offset) {
+        GradientSpec gradient = message.gradientAt(segment);
+        if (gradient == null) {
+            return message.colors[segment];
+        }
+        return gradient.colors()[message.gradientOffset[segment] + offset - message.start(segment)];
+    }
+}
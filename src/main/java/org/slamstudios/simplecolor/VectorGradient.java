@@ -0,0 +1,112 @@
+package org.slamstudios.simplecolor;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API implementation of the linear multi-stop gradient.
+ *
+ * Only loaded by {@link GradientUtil} after it confirmed that the
+ * jdk.incubator.vector module is present, so nothing else may reference it.
+ */
+final class VectorGradient {
+
+    private VectorGradient() {}
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    // Lane offsets 0, 1, 2, ... as floats
+    private static final float[] IOTA = new float[FLOATS.length()];
+
+    static {
+        for (int i = 0; i < IOTA.length; i++) {
+            IOTA[i] = i;
+        }
+    }
+
+    /**
+     * Fills packed 0xRRGGBB values for every step, using the same per-step
+     * arithmetic as the scalar loop in {@link GradientUtil#generatePacked}.
+     */
+    static void fill(int[] stops, int steps, int[] out) {
+        int segments = stops.length - 1;
+        float stepsPerSegment = (float) steps / segments;
+        FloatVector iota = FloatVector.fromArray(FLOATS, IOTA, 0);
+        int lanes = FLOATS.length();
+
+        int lo = 0;
+        for (int segment = 0; segment < segments && lo < steps; segment++) {
+            int hi = segment == segments - 1 ? steps : segmentEnd(segment, lo, steps, stepsPerSegment);
+
+            int start = stops[segment];
+            int end = stops[segment + 1];
+            float r0 = (start >> 16) & 0xFF;
+            float g0 = (start >> 8) & 0xFF;
+            float b0 = start & 0xFF;
+            float dr = ((end >> 16) & 0xFF) - r0;
+            float dg = ((end >> 8) & 0xFF) - g0;
+            float db = (end & 0xFF) - b0;
+
+            int i = lo;
+            int upper = lo + FLOATS.loopBound(hi - lo);
+            for (; i < upper; i += lanes) {
+                FloatVector index = iota.add((float) i);
+                FloatVector ratio = index.div(stepsPerSegment).sub((float) segment);
+                IntVector red = channel(ratio, r0, dr);
+                IntVector green = channel(ratio, g0, dg);
+                IntVector blue = channel(ratio, b0, db);
+                red.lanewise(VectorOperators.LSHL, 16)
+                        .or(green.lanewise(VectorOperators.LSHL, 8))
+                        .or(blue)
+                        .intoArray(out, i);
+            }
+            for (; i < hi; i++) {
+                float ratio = i / stepsPerSegment - segment;
+                out[i] = GradientUtil.pack(
+                        Math.round(r0 + ratio * dr),
+                        Math.round(g0 + ratio * dg),
+                        Math.round(b0 + ratio * db));
+            }
+            lo = hi;
+        }
+    }
+
+    /**
+     * Whether the float and int species line up so one float vector converts to one int vector.
+     */
+    static boolean isUsable() {
+        return FLOATS.length() == INTS.length();
+    }
+
+    /**
+     * Computes Math.round(base + ratio * delta) clamped to 0-255 for every lane.
+     */
+    private static IntVector channel(FloatVector ratio, float base, float delta) {
+        FloatVector value = ratio.mul(delta).add(base).max(0f).min(255f);
+        // Truncating value + 0.5f is not Math.round: the sum itself rounds, e.g. 0.49999997f + 0.5f == 1f.
+        // Round up from the exact fraction instead; values are non-negative, so truncation is floor
+        IntVector whole = (IntVector) value.convertShape(VectorOperators.F2I, INTS, 0);
+        FloatVector fraction = value.sub((FloatVector) whole.convertShape(VectorOperators.I2F, FLOATS, 0));
+        VectorMask<Integer> up = fraction.compare(VectorOperators.GE, 0.5f).cast(INTS);
+        return whole.add(1, up);
+    }
+
+    /**
+     * Finds the first step past lo that falls into a later segment.
+     */
+    private static int segmentEnd(int segment, int lo, int steps, float stepsPerSegment) {
+        int hi = Math.max(lo, Math.min(steps, (int) Math.ceil((segment + 1) * stepsPerSegment)));
+        // Nudge the estimate to agree with the scalar (int) (i / stepsPerSegment) exactly
+        while (hi > lo && (int) ((hi - 1) / stepsPerSegment) > segment) {
+            hi--;
+        }
+        while (hi < steps && (int) (hi / stepsPerSegment) <= segment) {
+            hi++;
+        }
+        return hi;
+    }
+}
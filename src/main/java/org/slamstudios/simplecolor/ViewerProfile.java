@@ -0,0 +1,119 @@
+package org.slamstudios.simplecolor;
+
+import org.slamstudios.simplecolor.enums.ChatColor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.awt.Color;
+import java.util.Objects;
+
+/**
+ * Describes how a viewer wants messages rendered.
+ *
+ * Viewers with equal profiles see the same Message, so a
+ * {@link ParsedMessage} renders once per distinct profile rather than once per viewer.
+ *
+ * Example:
+ * <pre>
+ * ViewerProfile profile = ViewerProfile.DEFAULT
+ *         .withPalette(ColorPalette.COLORBLIND_SAFE)
+ *         .withHighlight(viewer.getUsername());
+ * </pre>
+ */
+public final class ViewerProfile {
+
+    /**
+     * Renders messages exactly as parsed.
+     */
+    public static final ViewerProfile DEFAULT = new ViewerProfile(null, false, null, ChatColor.YELLOW.getColor());
+
+    @Nullable private final ColorPalette palette;
+    private final boolean stripColors;
+    @Nullable private final String highlight;
+    private final Color highlightColor;
+
+    private ViewerProfile(@Nullable ColorPalette palette, boolean stripColors, @Nullable String highlight,
+                          @Nonnull Color highlightColor) {
+        this.palette = palette;
+        this.stripColors = stripColors;
+        this.highlight = highlight;
+        this.highlightColor = highlightColor;
+    }
+
+    /**
+     * Gets the palette colors are remapped through, or null to keep them.
+     */
+    @Nullable
+    public ColorPalette getPalette() {
+        return palette;
+    }
+
+    /**
+     * Whether colors and formats are removed. Links are kept.
+     */
+    public boolean isStripColors() {
+        return stripColors;
+    }
+
+    /**
+     * Gets the word highlighted wherever it appears (case-insensitive), or null for none.
+     */
+    @Nullable
+    public String getHighlight() {
+        return highlight;
+    }
+
+    /**
+     * Gets the color used for highlighted words.
+     */
+    @Nonnull
+    public Color getHighlightColor() {
+        return highlightColor;
+    }
+
+    /**
+     * Returns a copy that remaps colors through the given palette.
+     */
+    @Nonnull
+    public ViewerProfile withPalette(@Nullable ColorPalette palette) {
+        return new ViewerProfile(palette, stripColors, highlight, highlightColor);
+    }
+
+    /**
+     * Returns a copy that strips colors and formats.
+     */
+    @Nonnull
+    public ViewerProfile withStripColors(boolean stripColors) {
+        return new ViewerProfile(palette, stripColors, highlight, highlightColor);
+    }
+
+    /**
+     * Returns a copy that highlights the given word, typically the viewer's name.
+     */
+    @Nonnull
+    public ViewerProfile withHighlight(@Nullable String word) {
+        String normalized = word == null || word.isEmpty() ? null : word.toLowerCase();
+        return new ViewerProfile(palette, stripColors, normalized, highlightColor);
+    }
+
+    /**
+     * Returns a copy that highlights in the given color.
+     */
+    @Nonnull
+    public ViewerProfile withHighlightColor(@Nonnull Color color) {
+        return new ViewerProfile(palette, stripColors, highlight, color);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ViewerProfile other)) return false;
+        return stripColors == other.stripColors && Objects.equals(palette, other.palette)
+                && Objects.equals(highlight, other.highlight) && highlightColor.equals(other.highlightColor);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(palette, stripColors, highlight, highlightColor);
+    }
+}
@@ -0,0 +1,21 @@
+package org.slamstudios.simplecolor;
+
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Decides which {@link ViewerProfile} a chat recipient sees.
+ *
+ * Register one with {@link SimpleColor#setViewerProfileResolver} to apply
+ * per-player preferences such as colorblind palettes or disabled colors.
+ */
+@FunctionalInterface
+public interface ViewerProfileResolver {
+
+    /**
+     * Gets the profile for a viewer. Should be cheap; it runs once per recipient.
+     */
+    @Nonnull
+    ViewerProfile resolve(@Nonnull PlayerRef viewer);
+}
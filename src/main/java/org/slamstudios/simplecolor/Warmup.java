@@ -0,0 +1,85 @@
+package org.slamstudios.simplecolor;
+
+import com.hypixel.hytale.server.core.Message;
+import org.slamstudios.simplecolor.enums.Interpolation;
+
+import javax.annotation.Nonnull;
+import java.awt.Color;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * Exercises the parse, render, strip and gradient paths once at startup,
+ * so class loading, static tables and the JIT are ready before the first
+ * chat message instead of during it.
+ *
+ * This also makes a server training run load every class the parser
+ * needs, so an AppCDS or AOT cache recorded from it covers them.
+ */
+final class Warmup {
+
+    private Warmup() {}
+
+    // Enough rounds for the hot loops to reach the optimizing compiler
+    private static final int ROUNDS = 2_000;
+
+    private static final String[] SAMPLES = {
+            "plain text without any codes",
+            "&cRed &aGreen &9Blue &lbold &oitalic &rreset",
+            "&#FF5500Custom orange &#00aaff&nunderlined",
+            "&#red:gold:blue{message} after",
+            "&#ff0000:00ff00@oklabPerceptual &#coral:navy@hsvHues",
+            "&*Rainbow text! &lBold rainbow",
+            "pre &(https://example.com)[Click here] post",
+            "{player}: {message}"
+    };
+
+    private static final List<Color> STOPS = List.of(new Color(255, 85, 85), new Color(255, 170, 0),
+            new Color(85, 85, 255));
+
+    // Keeps results reachable so the work is not optimized away
+    private static volatile Object sink;
+
+    /**
+     * Runs the warm-up on a low-priority daemon thread.
+     */
+    static void start(@Nonnull SimpleColor plugin) {
+        Thread thread = new Thread(() -> {
+            long start = System.nanoTime();
+            try {
+                run();
+                plugin.getLogger().at(Level.INFO).log("SimpleColor warm-up finished in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } catch (RuntimeException e) {
+                plugin.getLogger().at(Level.WARNING).withCause(e).log("SimpleColor warm-up failed");
+            }
+        }, "SimpleColor-Warmup");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Runs the warm-up on the calling thread.
+     */
+    static void run() {
+        // No sender, so none of this is charged to a parse budget
+        PlaceholderContext context = PlaceholderContext.of(null).with("message", "&eHello &lthere", true);
+        ViewerProfile profile = ViewerProfile.DEFAULT.withHighlight("text");
+        Interpolation[] modes = Interpolation.values();
+
+        for (int round = 0; round < ROUNDS; round++) {
+            for (String sample : SAMPLES) {
+                ParsedMessage parsed = ColorParser.parseSegments(sample, null, context);
+                Message message = parsed.toMessage();
+                sink = message;
+                sink = parsed.render(profile);
+                sink = ColorParser.serialize(parsed);
+                sink = ColorParser.truncate(parsed, 16);
+                sink = ColorParser.stripAll(sample);
+            }
+            sink = GradientUtil.generatePacked(STOPS, 64, modes[round % modes.length]);
+        }
+        sink = null;
+    }
+}
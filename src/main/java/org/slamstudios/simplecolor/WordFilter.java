@@ -0,0 +1,290 @@
+package org.slamstudios.simplecolor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Masks filtered words in parsed text, ignoring case.
+ *
+ * The words are compiled into an Aho-Corasick automaton, so each visible
+ * character costs one amortized step however long the word list is. The
+ * parser feeds it the characters of a placeholder as it writes them (see
+ * {@link PlaceholderContext#filter(String, WordFilter)}), and matches are
+ * masked in place, so colors, gradients and links stay as they were. Matches
+ * may span color codes: "ba&amp;cd" is caught as "bad".
+ *
+ * With whole words only, a match must not be preceded or followed by a
+ * letter or digit, so "class" does not match "ass".
+ *
+ * Instances are immutable. The filter built from the config is swapped in
+ * by a background thread on reload; until it is ready the previous one stays
+ * in use.
+ */
+public final class WordFilter {
+
+    private static volatile WordFilter active;
+    private static final AtomicLong BUILDS = new AtomicLong();
+
+    final char mask;
+    final boolean wholeWords;
+
+    // Goto function as an open-addressing table keyed by (state << 16 | char)
+    private final long[] keys;
+    private final int[] targets;
+    // Root transitions for ASCII, where most steps from the root land
+    private final int[] rootTargets = new int[128];
+    private final int[] failures;
+    // Length of the word ending at each state, 0 if none
+    final int[] lengths;
+    // Nearest state on the failure chain that ends a word, -1 if none
+    final int[] outputs;
+
+    private WordFilter(Collection<String> words, char mask, boolean wholeWords) {
+        this.mask = mask;
+        this.wholeWords = wholeWords;
+
+        // Trie, state 0 is the root
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        trie.add(new HashMap<>());
+        ends.add(0);
+        for (String word : words) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < word.length(); i++) {
+                char c = Character.toLowerCase(word.charAt(i));
+                Integer next = trie.get(state).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.get(state).put(c, next);
+                    trie.add(new HashMap<>());
+                    ends.add(0);
+                }
+                state = next;
+            }
+            ends.set(state, word.length());
+        }
+
+        int states = trie.size();
+        int edges = states - 1;
+        int capacity = Integer.highestOneBit(Math.max(2, edges * 2) - 1) << 1;
+        keys = new long[capacity];
+        targets = new int[capacity];
+        Arrays.fill(keys, -1);
+        failures = new int[states];
+        lengths = new int[states];
+        outputs = new int[states];
+        for (int s = 0; s < states; s++) {
+            lengths[s] = ends.get(s);
+            for (Map.Entry<Character, Integer> edge : trie.get(s).entrySet()) {
+                put(key(s, edge.getKey()), edge.getValue());
+                if (s == 0 && edge.getKey() < 128) {
+                    rootTargets[edge.getKey()] = edge.getValue();
+                }
+            }
+        }
+
+        // Failure and output links, breadth first
+        outputs[0] = -1;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : trie.get(0).values()) {
+            failures[child] = 0;
+            outputs[child] = -1;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (Map.Entry<Character, Integer> edge : trie.get(state).entrySet()) {
+                int child = edge.getValue();
+                int failure = step(failures[state], edge.getKey());
+                failures[child] = failure;
+                outputs[child] = lengths[failure] > 0 ? failure : outputs[failure];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Builds a filter.
+     *
+     * @param words the words to mask, matched ignoring case
+     * @param mask the character each masked character is replaced with
+     * @param wholeWords whether matches inside longer words are left alone
+     */
+    @Nonnull
+    public static WordFilter of(@Nonnull Collection<String> words, char mask, boolean wholeWords) {
+        return new WordFilter(words, mask, wholeWords);
+    }
+
+    /**
+     * Gets the filter built from the config, or null if filtering is off.
+     */
+    @Nullable
+    public static WordFilter active() {
+        return active;
+    }
+
+    /**
+     * Masks filtered words in plain text.
+     */
+    @Nonnull
+    public String apply(@Nonnull String text) {
+        StringBuilder out = new StringBuilder(text);
+        Matcher matcher = new Matcher(this, out, 0);
+        for (int i = 0; i < text.length(); i++) {
+            matcher.next(i);
+        }
+        matcher.finish();
+        return out.toString();
+    }
+
+    /**
+     * Rebuilds the active filter from the config on a background thread.
+     */
+    static void rebuild(@Nonnull SimpleColorConfig config) {
+        long build = BUILDS.incrementAndGet();
+        if (!config.isWordFilterEnabled() || config.getFilterWords().isEmpty()) {
+            active = null;
+            return;
+        }
+        List<String> words = List.copyOf(config.getFilterWords());
+        String mask = config.getFilterMask();
+        boolean wholeWords = config.isFilterWholeWords();
+        Thread thread = new Thread(() -> {
+            WordFilter filter = new WordFilter(words, mask.isEmpty() ? '*' : mask.charAt(0), wholeWords);
+            // A newer reload may have finished first
+            if (BUILDS.get() == build) {
+                active = filter;
+                SimpleColor plugin = SimpleColor.getInstance();
+                if (plugin != null) {
+                    plugin.getLogger().at(Level.INFO).log("Word filter built with " + words.size() + " words");
+                }
+            }
+        }, "SimpleColor-WordFilter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Follows the goto function from a state, falling back along failure links.
+     */
+    int step(int state, char c) {
+        while (true) {
+            if (state == 0 && c < 128) {
+                return rootTargets[c];
+            }
+            int next = get(key(state, c));
+            if (next >= 0) {
+                return next;
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = failures[state];
+        }
+    }
+
+    private static long key(int state, char c) {
+        return (long) state << 16 | c;
+    }
+
+    private void put(long key, int target) {
+        int last = keys.length - 1;
+        int slot = (int) mix(key) & last;
+        while (keys[slot] != -1) {
+            slot = (slot + 1) & last;
+        }
+        keys[slot] = key;
+        targets[slot] = target;
+    }
+
+    private int get(long key) {
+        int last = keys.length - 1;
+        for (int slot = (int) mix(key) & last; keys[slot] != -1; slot = (slot + 1) & last) {
+            if (keys[slot] == key) {
+                return targets[slot];
+            }
+        }
+        return -1;
+    }
+
+    private static long mix(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return key ^ (key >>> 32);
+    }
+
+    /**
+     * Runs the automaton over text as it is written, masking matches in the buffer.
+     */
+    static final class Matcher {
+        private final WordFilter filter;
+        private final StringBuilder text;
+        // Where the filtered text starts in the buffer
+        private final int from;
+        private int state;
+        // A whole-word match waiting to see the next character, or -1
+        private int candidateStart = -1;
+        private int candidateEnd;
+
+        Matcher(@Nonnull WordFilter filter, @Nonnull StringBuilder text, int from) {
+            this.filter = filter;
+            this.text = text;
+            this.from = from;
+        }
+
+        /**
+         * Consumes the character just written at index.
+         */
+        void next(int index) {
+            char c = text.charAt(index);
+            if (candidateStart >= 0) {
+                if (!Character.isLetterOrDigit(c)) {
+                    mask(candidateStart, candidateEnd);
+                }
+                candidateStart = -1;
+            }
+            state = filter.step(state, Character.toLowerCase(c));
+            int match = filter.lengths[state] > 0 ? state : filter.outputs[state];
+            for (; match >= 0; match = filter.outputs[match]) {
+                int start = index + 1 - filter.lengths[match];
+                if (!filter.wholeWords) {
+                    // The first match is the longest; shorter ones are inside it
+                    mask(start, index + 1);
+                    return;
+                }
+                if (start == from || !Character.isLetterOrDigit(text.charAt(start - 1))) {
+                    candidateStart = start;
+                    candidateEnd = index + 1;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Ends the filtered text; a pending whole-word match ends at a boundary.
+         */
+        void finish() {
+            if (candidateStart >= 0) {
+                mask(candidateStart, candidateEnd);
+                candidateStart = -1;
+            }
+        }
+
+        private void mask(int start, int end) {
+            for (int i = start; i < end; i++) {
+                text.setCharAt(i, filter.mask);
+            }
+        }
+    }
+}
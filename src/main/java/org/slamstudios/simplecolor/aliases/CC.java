@@ -1,7 +1,9 @@
 package org.slamstudios.simplecolor.aliases;
 
 import com.hypixel.hytale.server.core.Message;
+import org.slamstudios.simplecolor.ParsedMessage;
 import org.slamstudios.simplecolor.enums.ChatColor;
+import org.slamstudios.simplecolor.enums.Interpolation;
 
 import javax.annotation.Nonnull;
 
@@ -54,6 +56,11 @@ public class CC {
         return ChatColor.gradient(colors);
     }
     
+    @Nonnull
+    public static String gradient(@Nonnull Interpolation mode, @Nonnull String... colors) {
+        return ChatColor.gradient(mode, colors);
+    }
+    
     @Nonnull
     public static String link(@Nonnull String url, @Nonnull String text) {
         return ChatColor.link(url, text);
@@ -64,6 +71,11 @@ public class CC {
         return ChatColor.translate(message);
     }
     
+    @Nonnull
+    public static ParsedMessage translateLazy(@Nonnull String message) {
+        return ChatColor.translateLazy(message);
+    }
+    
     @Nonnull
     public static String stripColor(@Nonnull String input) {
         return ChatColor.stripColor(input);
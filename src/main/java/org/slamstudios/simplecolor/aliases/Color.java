@@ -1,7 +1,9 @@
 package org.slamstudios.simplecolor.aliases;
 
 import com.hypixel.hytale.server.core.Message;
+import org.slamstudios.simplecolor.ParsedMessage;
 import org.slamstudios.simplecolor.enums.ChatColor;
+import org.slamstudios.simplecolor.enums.Interpolation;
 
 import javax.annotation.Nonnull;
 
@@ -57,6 +59,11 @@ public class Color {
         return ChatColor.gradient(colors);
     }
     
+    @Nonnull
+    public static String gradient(@Nonnull Interpolation mode, @Nonnull String... colors) {
+        return ChatColor.gradient(mode, colors);
+    }
+    
     @Nonnull
     public static String link(@Nonnull String url, @Nonnull String text) {
         return ChatColor.link(url, text);
@@ -67,6 +74,11 @@ public class Color {
         return ChatColor.translate(message);
     }
     
+    @Nonnull
+    public static ParsedMessage translateLazy(@Nonnull String message) {
+        return ChatColor.translateLazy(message);
+    }
+    
     @Nonnull
     public static String stripColor(@Nonnull String input) {
         return ChatColor.stripColor(input);
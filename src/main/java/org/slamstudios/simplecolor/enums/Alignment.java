@@ -0,0 +1,10 @@
+package org.slamstudios.simplecolor.enums;
+
+/**
+ * Horizontal alignment used when padding a message to a width.
+ */
+public enum Alignment {
+    LEFT,
+    CENTER,
+    RIGHT
+}
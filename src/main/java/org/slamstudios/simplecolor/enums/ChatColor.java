@@ -2,13 +2,13 @@ package org.slamstudios.simplecolor.enums;
 
 import com.hypixel.hytale.server.core.Message;
 import org.slamstudios.simplecolor.ColorParser;
+import org.slamstudios.simplecolor.ColorRegistry;
+import org.slamstudios.simplecolor.ParsedMessage;
 import org.slamstudios.simplecolor.Permissions;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.awt.Color;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Represents chat colors with their legacy codes and permissions.
@@ -17,6 +17,7 @@ import java.util.Map;
  * - Legacy colors: ChatColor.RED, ChatColor.BLUE, etc.
  * - Hex colors: ChatColor.hex("#FF5733")
  * - Gradients: ChatColor.gradient("red", "blue", "green")
+ * - Gradient color spaces: ChatColor.gradient(Interpolation.OKLAB, "red", "blue")
  * - Rainbow: ChatColor.RAINBOW
  * - Links: ChatColor.link("https://example.com", "Click Here")
  * - Translation: ChatColor.translate(message)
@@ -48,13 +49,13 @@ public enum ChatColor {
     /** Rainbow gradient code */
     public static final String RAINBOW = "&*";
 
-    private static final Map<Character, ChatColor> BY_CODE = new HashMap<>();
-    private static final Map<String, ChatColor> BY_NAME = new HashMap<>();
+    // Indexed by lowercase ASCII code; a flat array needs no boxing and initializes trivially
+    private static final ChatColor[] BY_CODE = new ChatColor[128];
+    private static final ChatColor[] VALUES = values();
 
     static {
-        for (ChatColor color : values()) {
-            BY_CODE.put(color.code, color);
-            BY_NAME.put(color.name.toLowerCase(), color);
+        for (ChatColor color : VALUES) {
+            BY_CODE[color.code] = color;
         }
     }
 
@@ -112,15 +113,22 @@ public enum ChatColor {
      */
     @Nullable
     public static ChatColor getByCode(char code) {
-        return BY_CODE.get(Character.toLowerCase(code));
+        char lower = Character.toLowerCase(code);
+        return lower < BY_CODE.length ? BY_CODE[lower] : null;
     }
 
     /**
-     * Gets a ChatColor by its name.
+     * Gets a ChatColor by its name, ignoring case.
+     * Other named colors (CSS, custom) are in {@link ColorRegistry}.
      */
     @Nullable
     public static ChatColor getByName(@Nonnull String name) {
-        return BY_NAME.get(name.toLowerCase());
+        for (ChatColor color : VALUES) {
+            if (color.name.equalsIgnoreCase(name)) {
+                return color;
+            }
+        }
+        return null;
     }
 
     // ==================== HEX COLORS ====================
@@ -155,7 +163,8 @@ public enum ChatColor {
     @Nonnull
     public static Color parseHex(@Nonnull String hex) {
         String cleanHex = hex.startsWith("#") ? hex.substring(1) : hex;
-        if (cleanHex.length() != 6) {
+        // Integer.parseInt would also take non-ASCII digits
+        if (!cleanHex.matches("[0-9a-fA-F]{6}")) {
             throw new IllegalArgumentException("Invalid hex color: " + hex);
         }
         return new Color(
@@ -202,10 +211,10 @@ public enum ChatColor {
             if (color.startsWith("#")) {
                 gradient.append(color.substring(1)); // Remove # from hex
             } else {
-                // Try to resolve as color name
-                ChatColor namedColor = getByName(color);
-                if (namedColor != null) {
-                    gradient.append(toHex(namedColor.getColor()));
+                // Try to resolve as a registered color name
+                int named = ColorRegistry.lookup(color);
+                if (named != -1) {
+                    gradient.append(toHex(new Color(named)));
                 } else {
                     // Assume it's a hex without #
                     gradient.append(color);
@@ -217,19 +226,26 @@ public enum ChatColor {
     }
 
     /**
-     * Parses a color from name or hex.
+     * Creates a gradient color code that interpolates in the given color space.
+     * 
+     * Example: ChatColor.gradient(Interpolation.OKLAB, "red", "blue")
+     * 
+     * @param mode The interpolation mode
+     * @param colors Color names (e.g., "red", "blue") or hex codes (e.g., "#FF5733")
+     * @return Gradient color code string
+     */
+    @Nonnull
+    public static String gradient(@Nonnull Interpolation mode, @Nonnull String... colors) {
+        String gradient = gradient(colors);
+        return mode == Interpolation.LINEAR ? gradient : gradient + mode;
+    }
+
+    /**
+     * Parses a color from a registered name or a hex code (#RRGGBB or RRGGBB).
      */
     @Nullable
     public static Color parseColor(@Nonnull String input) {
-        ChatColor named = getByName(input);
-        if (named != null) {
-            return named.getColor();
-        }
-        try {
-            return parseHex(input);
-        } catch (Exception e) {
-            return null;
-        }
+        return ColorRegistry.resolve(input);
     }
 
     // ==================== LINKS ====================
@@ -271,6 +287,22 @@ public enum ChatColor {
         return ColorParser.parse(message);
     }
 
+    /**
+     * Parses color codes without building a Message yet.
+     * 
+     * Use this when only the plain text, visible length or link check is
+     * needed; the Message is built on the first toMessage() call and cached.
+     * 
+     * Example: ChatColor.translateLazy(input).getVisibleLength()
+     * 
+     * @param message The message with color codes
+     * @return Parsed message handle
+     */
+    @Nonnull
+    public static ParsedMessage translateLazy(@Nonnull String message) {
+        return ColorParser.parseSegments(message);
+    }
+
     /**
      * Strips all color codes from a string.
      */
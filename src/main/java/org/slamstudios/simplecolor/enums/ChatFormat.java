@@ -4,8 +4,6 @@ import org.slamstudios.simplecolor.Permissions;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Represents chat format codes with their permissions.
@@ -20,13 +18,13 @@ public enum ChatFormat {
     public static final char FORMAT_CHAR = '\u00A7';
     public static final char ALT_FORMAT_CHAR = '&';
 
-    private static final Map<Character, ChatFormat> BY_CODE = new HashMap<>();
-    private static final Map<String, ChatFormat> BY_NAME = new HashMap<>();
+    // Indexed by lowercase ASCII code; a flat array needs no boxing and initializes trivially
+    private static final ChatFormat[] BY_CODE = new ChatFormat[128];
+    private static final ChatFormat[] VALUES = values();
 
     static {
-        for (ChatFormat format : values()) {
-            BY_CODE.put(format.code, format);
-            BY_NAME.put(format.name.toLowerCase(), format);
+        for (ChatFormat format : VALUES) {
+            BY_CODE[format.code] = format;
         }
     }
 
@@ -74,21 +72,27 @@ public enum ChatFormat {
      */
     @Nullable
     public static ChatFormat getByCode(char code) {
-        return BY_CODE.get(Character.toLowerCase(code));
+        char lower = Character.toLowerCase(code);
+        return lower < BY_CODE.length ? BY_CODE[lower] : null;
     }
 
     /**
-     * Gets a ChatFormat by its name.
+     * Gets a ChatFormat by its name, ignoring case.
      */
     @Nullable
     public static ChatFormat getByName(@Nonnull String name) {
-        return BY_NAME.get(name.toLowerCase());
+        for (ChatFormat format : VALUES) {
+            if (format.name.equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        return null;
     }
 
     /**
      * Checks if a character is a valid format code.
      */
     public static boolean isFormatCode(char code) {
-        return BY_CODE.containsKey(Character.toLowerCase(code));
+        return getByCode(code) != null;
     }
 }
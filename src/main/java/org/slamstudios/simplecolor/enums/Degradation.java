@@ -0,0 +1,13 @@
+package org.slamstudios.simplecolor.enums;
+
+/**
+ * How much styling a player's messages keep after they exceed their parse budget.
+ */
+public enum Degradation {
+    /** Parsed normally. */
+    NONE,
+    /** Gradients and rainbows become the solid color of their first stop. */
+    SOLID,
+    /** Colors, formats and links are dropped; only the text remains. */
+    PLAIN
+}
@@ -0,0 +1,12 @@
+package org.slamstudios.simplecolor.enums;
+
+/**
+ * How a gradient behaves when only part of its text is kept,
+ * e.g. after truncating or wrapping a message.
+ */
+public enum GradientFit {
+    /** Keep each character's original color; the gradient is cut off. */
+    CLIP,
+    /** Spread the full gradient over the characters that are kept. */
+    RECOMPUTE
+}
@@ -0,0 +1,58 @@
+package org.slamstudios.simplecolor.enums;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Color spaces a gradient can be interpolated in.
+ *
+ * Selected in color codes with an {@code @mode} suffix, e.g. {@code &#red:blue@oklab}.
+ */
+public enum Interpolation {
+    /** Straight lerp of the sRGB channel values (the default). */
+    LINEAR("linear"),
+    /** Lerp in linear light, avoiding the dark band between saturated colors. */
+    GAMMA("gamma"),
+    /** Lerp in the OKLab perceptual space for even perceived steps. */
+    OKLAB("oklab"),
+    /** Lerp hue, saturation and value, taking the short way around the hue wheel. */
+    HSV("hsv");
+
+    private static final Interpolation[] VALUES = values();
+
+    private final String name;
+
+    Interpolation(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the name used in color codes.
+     */
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the color code suffix for this mode (@name).
+     */
+    @Override
+    public String toString() {
+        return "@" + name;
+    }
+
+    /**
+     * Gets an Interpolation by its name, ignoring case. The comparison does not
+     * depend on the default locale, so "LINEAR" matches on a Turkish server too.
+     */
+    @Nullable
+    public static Interpolation getByName(@Nonnull String name) {
+        for (Interpolation mode : VALUES) {
+            if (mode.name.equalsIgnoreCase(name)) {
+                return mode;
+            }
+        }
+        return null;
+    }
+}
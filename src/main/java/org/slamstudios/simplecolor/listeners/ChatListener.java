@@ -1,46 +1,70 @@
 package org.slamstudios.simplecolor.listeners;
 
-import com.hypixel.hytale.server.core.Message;
 import com.hypixel.hytale.server.core.event.events.player.PlayerChatEvent;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
+import org.slamstudios.simplecolor.ChatAuditLog;
 import org.slamstudios.simplecolor.ColorParser;
+import org.slamstudios.simplecolor.ParsedMessage;
+import org.slamstudios.simplecolor.PlaceholderContext;
 import org.slamstudios.simplecolor.SimpleColor;
 import org.slamstudios.simplecolor.SimpleColorConfig;
-import org.slamstudios.simplecolor.aliases.Color;
+import org.slamstudios.simplecolor.SpamDetector;
+import org.slamstudios.simplecolor.ViewerProfileResolver;
+import org.slamstudios.simplecolor.WordFilter;
 
 public class ChatListener {
 
     public static void onPlayerChat(PlayerChatEvent event) {
         SimpleColorConfig config = SimpleColor.getConfig();
 
-        // If chat parsing is disabled, don't modify the event
-        if (!config.isChatParsingEnabled()) {
+        PlayerRef playerRef = event.getSender();
+        String content = event.getContent();
+
+        // If chat parsing is disabled, or the plugin already shut down, don't modify the event
+        if (config == null || !config.isChatParsingEnabled()) {
+            if (ChatAuditLog.isEnabled()) {
+                ChatAuditLog.publish(playerRef, ColorParser.stripAll(content));
+            }
             return;
         }
 
-        PlayerRef playerRef = event.getSender();
-        String playerName = playerRef.getUsername();
-        String content = event.getContent();
         String format = config.getChatFormat();
 
-        event.setFormatter((player, message) -> {
-            // Build the formatted message by replacing placeholders
-            // Split format around {message} to handle it specially
-            int msgIndex = format.indexOf("{message}");
-            if (msgIndex >= 0) {
-                String beforeMsg = format.substring(0, msgIndex).replace("{player}", playerName);
-                String afterMsg = format.substring(msgIndex + 9).replace("{player}", playerName);
-
-                Message prefix = ColorParser.parse(beforeMsg);
-                Message parsedContent = ColorParser.parse(content);
-                Message suffix = ColorParser.parse(afterMsg);
-
-                return prefix.insert(parsedContent).insert(suffix);
-            } else {
-                // No {message} placeholder, just parse the whole format
-                String formatted = format.replace("{player}", playerName).replace("{message}", content);
-                return ColorParser.parse(formatted);
+        // {player} resolves to the sender's name as plain text; the message itself may use codes
+        // Only the sender's own text is reduced when they are over their parse budget
+        PlaceholderContext context = PlaceholderContext.of(playerRef).with("message", content, true)
+                .fromSender("message");
+        if (config.isSpamDetectionEnabled()) {
+            // Hashed while it is parsed, so spam checks need no second pass over the text
+            context.fingerprint("message");
+        }
+        WordFilter filter = WordFilter.active();
+        if (filter != null) {
+            // Masked as it is parsed, keeping the colors of the masked characters
+            context.filter("message", filter);
+        }
+
+        // Parse once for all recipients; each distinct viewer profile is rendered once
+        ParsedMessage parsed = ColorParser.parseSegments(format, null, context);
+
+        // The parse already has the message without codes, copied before the filter masked it;
+        // a format without {message} never parsed it
+        String sent = context.getSenderText();
+        String stripped = sent != null ? sent : ColorParser.stripAll(content);
+
+        if (SpamDetector.isSpam(playerRef.getUuid(), context.getFingerprint())) {
+            // Blocked messages are still audited, marked as blocked
+            ChatAuditLog.publish(playerRef, stripped, true);
+            event.setCancelled(true);
+            if (!config.getSpamMessage().isEmpty()) {
+                playerRef.sendMessage(ColorParser.parse(config.getSpamMessage()));
             }
-        });
+            return;
+        }
+
+        ChatAuditLog.publish(playerRef, stripped);
+
+        ViewerProfileResolver resolver = SimpleColor.getViewerProfileResolver();
+        event.setFormatter((player, message) -> parsed.render(resolver.resolve(player)));
     }
 }
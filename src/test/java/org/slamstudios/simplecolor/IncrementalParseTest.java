@@ -0,0 +1,79 @@
+package org.slamstudios.simplecolor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * After any sequence of edits, an incremental parse must give exactly the
+ * segments a full parse of the edited input gives.
+ */
+class IncrementalParseTest {
+
+    // Whole codes, codes cut in half and stray brackets, so edits can complete or break them
+    private static final String[] TOKENS = {"&c", "&l", "&o", "&r", "&#ff0000", "&#ff00", "&#red:blue",
+            "&#00ff00:", "0000ff", "@oklab", "&*", "&(example.com)[t]", "&(", "&#", "&", "]", ")", "[", "§a",
+            "a", "b", " ", "xyz"};
+
+    @Test
+    void randomEditsMatchFullParse() {
+        Random random = new Random(1);
+        for (int n = 0; n < 20_000; n++) {
+            StringBuilder input = new StringBuilder();
+            int tokens = random.nextInt(12);
+            for (int t = 0; t < tokens; t++) {
+                input.append(TOKENS[random.nextInt(TOKENS.length)]);
+            }
+            IncrementalParse parse = IncrementalParse.of(input.toString(), null);
+            assertMatchesFullParse(parse, "initial " + input);
+
+            for (int e = 0; e < 6; e++) {
+                String before = parse.getInput();
+                int offset = random.nextInt(before.length() + 1);
+                int removed = random.nextInt(Math.min(4, before.length() - offset) + 1);
+                String inserted = random.nextInt(3) == 0 ? "" : TOKENS[random.nextInt(TOKENS.length)];
+                parse = parse.edit(offset, removed, inserted);
+                assertMatchesFullParse(parse,
+                        before + " edited at " + offset + " removing " + removed + " inserting '" + inserted + "'");
+            }
+        }
+    }
+
+    @Test
+    void typingAtTheEndMatchesFullParse() {
+        String typed = "&#ff0000:0000ff@oklab&lHello &(example.com)[there] &*world&r!";
+        IncrementalParse parse = IncrementalParse.of("", null);
+        for (int i = 0; i < typed.length(); i++) {
+            parse = parse.edit(i, 0, typed.substring(i, i + 1));
+            assertMatchesFullParse(parse, "typed " + parse.getInput());
+        }
+    }
+
+    private static void assertMatchesFullParse(IncrementalParse parse, String description) {
+        assertEquals(describe(ColorParser.parseSegments(parse.getInput())), describe(parse.getResult()), description);
+    }
+
+    /**
+     * The visible text followed by each segment's end, style, link and colors.
+     */
+    private static String describe(ParsedMessage message) {
+        StringBuilder out = new StringBuilder(message.text).append('|');
+        for (int i = 0; i < message.size; i++) {
+            out.append(message.ends[i]).append('/').append(message.styles[i]).append('/').append(message.linkAt(i))
+                    .append('/');
+            GradientSpec gradient = message.gradientAt(i);
+            if (gradient == null) {
+                out.append(Integer.toHexString(message.colors[i]));
+            } else {
+                for (int j = message.start(i); j < message.ends[i]; j++) {
+                    int color = gradient.colors()[message.gradientOffset[i] + j - message.start(i)];
+                    out.append(Integer.toHexString(color)).append('.');
+                }
+            }
+            out.append(' ');
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,100 @@
+package org.slamstudios.simplecolor;
+
+import org.junit.jupiter.api.Test;
+import org.slamstudios.simplecolor.enums.ChatColor;
+
+import java.awt.Color;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Serializing a message and parsing the result must give the same visible
+ * text with the same color, formats and link on every character.
+ */
+class LegacySerializerTest {
+
+    // A lone & or § followed by a code's character after other codes is literal text that looks like a code
+    private static final String[] TOKENS = {"&c", "&l", "&o", "&n", "&r", "&#ff0000", "&#123456", "&#red:blue",
+            "&#ff0000:00ff00@oklab", "&*", "&(example.com)[t]", "a", "b", " ", "xyz", ":", ":red", ":ff00ff", "@",
+            "@hsv", "hello", "&", "§", "4", "#", "(", "*"};
+
+    @Test
+    void randomInputsRoundTrip() {
+        Random random = new Random(3);
+        for (int n = 0; n < 20_000; n++) {
+            StringBuilder input = new StringBuilder();
+            int tokens = random.nextInt(10);
+            for (int t = 0; t < tokens; t++) {
+                input.append(TOKENS[random.nextInt(TOKENS.length)]);
+            }
+            assertRoundTrip(ColorParser.parseSegments(input.toString()), input.toString());
+        }
+    }
+
+    @Test
+    void colonAfterHexColorStaysText() {
+        assertRoundTrip(SimpleColor.builder().hex("123456").text(":red").buildSegments(), "hex then :red");
+        assertRoundTrip(SimpleColor.builder().hex("123456").text(":ff00ff").buildSegments(), "hex then :ff00ff");
+        assertRoundTrip(SimpleColor.builder().bold().hex("123456").text(":red").buildSegments(), "bold hex then :red");
+        assertRoundTrip(SimpleColor.builder().hex("123456").bold().text(":red").buildSegments(), "hex bold then :red");
+    }
+
+    @Test
+    void colonAfterGradientStaysText() {
+        assertRoundTrip(SimpleColor.builder().gradient(ChatColor.RED.getColor(), ChatColor.BLUE.getColor())
+                .text(":gold").buildSegments(), "gradient then :gold");
+        assertRoundTrip(SimpleColor.builder().gradient(new Color(0x123456), new Color(0x654321))
+                .text(":ab").buildSegments(), "gradient then :ab");
+    }
+
+    @Test
+    void modeLikeTextAfterGradientStaysText() {
+        assertRoundTrip(SimpleColor.builder().gradient(ChatColor.RED.getColor(), ChatColor.BLUE.getColor())
+                .text("@hsv text").buildSegments(), "gradient then @hsv");
+    }
+
+    @Test
+    void codeLikeTextStaysText() {
+        assertRoundTrip(SimpleColor.builder().text("&4[Admin] §lHi &#ff0000 &* &(x.com)[y]").buildSegments(),
+                "plain code-like text");
+        assertRoundTrip(SimpleColor.builder().color(ChatColor.GRAY).text("&4[Admin]").buildSegments(),
+                "colored code-like text");
+        assertRoundTrip(SimpleColor.builder().hex("123456").text("&4[Admin]").buildSegments(),
+                "hex code-like text");
+        assertRoundTrip(SimpleColor.builder().hex("123456").text(":&4").buildSegments(),
+                "colon then code-like text");
+        assertRoundTrip(SimpleColor.builder().bold().text("&4[Admin]").buildSegments(), "bold code-like text");
+        assertRoundTrip(SimpleColor.builder().gradient(ChatColor.RED.getColor(), ChatColor.BLUE.getColor())
+                .text("&4[Admin]").buildSegments(), "gradient code-like text");
+        assertRoundTrip(SimpleColor.builder().text("&").color(ChatColor.RED).text("l").buildSegments(),
+                "& ending a segment");
+    }
+
+    private static void assertRoundTrip(ParsedMessage message, String description) {
+        String serialized = ColorParser.serialize(message);
+        ParsedMessage reparsed = ColorParser.parseSegments(serialized);
+        assertEquals(describe(message), describe(reparsed), description + " serialized as " + serialized);
+    }
+
+    /**
+     * The visible text followed by color, style and link of each character.
+     */
+    private static String describe(ParsedMessage message) {
+        StringBuilder out = new StringBuilder(message.text).append('|');
+        for (int i = 0; i < message.size; i++) {
+            GradientSpec gradient = message.gradientAt(i);
+            for (int j = message.start(i); j < message.ends[i]; j++) {
+                int color = gradient != null
+                        ? gradient.colors()[message.gradientOffset[i] + j - message.start(i)]
+                        : message.colors[i];
+                out.append(Integer.toHexString(color)).append('/').append(message.styles[i]);
+                if (message.linkAt(i) != null) {
+                    out.append('@').append(message.linkAt(i));
+                }
+                out.append(' ');
+            }
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,63 @@
+package org.slamstudios.simplecolor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A compiled template must render exactly the segments a parse of its source
+ * gives, with and without placeholder values.
+ */
+class TemplateTest {
+
+    // Codes, codes cut off by a placeholder, placeholders inside links and unknown keys
+    private static final String[] TOKENS = {"&c", "&l", "&o", "&r", "&#ff0000", "&#ff00", "&#red:blue",
+            "&#ff0000:00ff00@oklab", "&#red:", "&*", "&(example.com)[t]", "&(example.com)[{a}]", "&(", "&", "§a",
+            "{a}", "{b}", "{unknown}", "{", "}", "a", "b", " ", "xyz"};
+
+    @Test
+    void randomTemplatesMatchParse() {
+        Random random = new Random(5);
+        for (int n = 0; n < 20_000; n++) {
+            StringBuilder source = new StringBuilder();
+            int tokens = random.nextInt(10);
+            for (int t = 0; t < tokens; t++) {
+                source.append(TOKENS[random.nextInt(TOKENS.length)]);
+            }
+            String input = source.toString();
+            Template template = Template.compile(input);
+            assertEquals(describe(ColorParser.parseSegments(input, null, null)), describe(template.render(null)),
+                    "without values: " + input);
+            assertEquals(describe(ColorParser.parseSegments(input, null, context())), describe(template.render(context())),
+                    "with values: " + input);
+        }
+    }
+
+    private static PlaceholderContext context() {
+        return PlaceholderContext.of(null).with("a", "&9trusted &lbold", true).with("b", "&4[Admin]", false);
+    }
+
+    /**
+     * The visible text followed by each segment's end, style, link and colors.
+     */
+    private static String describe(ParsedMessage message) {
+        StringBuilder out = new StringBuilder(message.text).append('|');
+        for (int i = 0; i < message.size; i++) {
+            out.append(message.ends[i]).append('/').append(message.styles[i]).append('/').append(message.linkAt(i))
+                    .append('/');
+            GradientSpec gradient = message.gradientAt(i);
+            if (gradient == null) {
+                out.append(Integer.toHexString(message.colors[i]));
+            } else {
+                for (int j = message.start(i); j < message.ends[i]; j++) {
+                    int color = gradient.colors()[message.gradientOffset[i] + j - message.start(i)];
+                    out.append(Integer.toHexString(color)).append('.');
+                }
+            }
+            out.append(' ');
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,39 @@
+package org.slamstudios.simplecolor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * The Vector API path must give exactly the colors of the scalar loop.
+ */
+class VectorGradientTest {
+
+    @Test
+    void randomGradientsMatchScalar() {
+        Random random = new Random(7);
+        for (int n = 0; n < 20_000; n++) {
+            int[] stops = new int[2 + random.nextInt(6)];
+            for (int i = 0; i < stops.length; i++) {
+                stops[i] = random.nextInt(0x1000000);
+            }
+            assertMatchesScalar(stops, 1 + random.nextInt(600));
+        }
+    }
+
+    @Test
+    void valueJustBelowHalfRoundsDown() {
+        // Step 1 of 82 from 0 to 41 is 0.49999997f, which truncating after +0.5f takes to 1
+        assertMatchesScalar(new int[] {0x000000, 0x292929}, 82);
+    }
+
+    private static void assertMatchesScalar(int[] stops, int steps) {
+        int[] expected = new int[steps];
+        GradientUtil.fillLinear(stops, steps, expected);
+        int[] actual = new int[steps];
+        VectorGradient.fill(stops, steps, actual);
+        assertArrayEquals(expected, actual, steps + " steps over " + stops.length + " stops");
+    }
+}